@@ -0,0 +1,5 @@
+# Strip debug logging from release builds: R8 removes WidgetLog.d() calls
+# together with the argument expressions that only feed them
+-assumenosideeffects class com.example.pfd6000.widget.WidgetLog {
+    public static void d(...);
+}
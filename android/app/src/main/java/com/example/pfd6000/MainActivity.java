@@ -3,7 +3,6 @@ package com.example.pfd6000;
 import android.appwidget.AppWidgetManager;
 import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -12,9 +11,12 @@ import io.flutter.embedding.engine.FlutterEngine;
 import io.flutter.embedding.engine.FlutterEngineCache;
 import io.flutter.plugin.common.MethodChannel;
 
+import com.example.pfd6000.widget.DoorTileService;
+import com.example.pfd6000.widget.EngineWarmService;
+import com.example.pfd6000.widget.WidgetExecutor;
+import com.example.pfd6000.widget.WidgetLog;
 import com.example.pfd6000.widget.WidgetStorageManager;
-import com.example.pfd6000.widget.DoorWidget1x4;
-import com.example.pfd6000.widget.DoorWidget1x1;
+import com.example.pfd6000.widget.WidgetRenderer;
 
 public class MainActivity extends FlutterActivity {
     private static final String TAG = "WIDGET";
@@ -37,7 +39,7 @@ public class MainActivity extends FlutterActivity {
         methodChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL_NAME);
         
         methodChannel.setMethodCallHandler((call, result) -> {
-            Log.d(TAG, "MethodChannel call: " + call.method);
+            WidgetLog.d(TAG, "MethodChannel call: {}", call.method);
             switch (call.method) {
                 case "updateWidget":
                     handleUpdateWidget(call.arguments, result);
@@ -48,8 +50,24 @@ public class MainActivity extends FlutterActivity {
                 case "saveDoorConfig":
                     handleSaveDoorConfig(call.arguments, result);
                     break;
+                case "setKeepWarmEngine":
+                    handleSetKeepWarmEngine(call.arguments, result);
+                    break;
+                case "getKeepWarmStats":
+                    EngineWarmService.getStatsAsync(this, result::success);
+                    break;
+                case "getWidgetBindings":
+                    handleGetWidgetBindings(result);
+                    break;
+                case "setTileWidget":
+                    handleSetTileWidget(call.arguments, result);
+                    break;
+                case "getNativeLogs":
+                    // Recent native events for field diagnostics, oldest first
+                    result.success(WidgetLog.snapshot());
+                    break;
                 case "finishActivity":
-                    Log.d(TAG, "finishActivity called");
+                    WidgetLog.d(TAG, "finishActivity called");
                     result.success(true);
                     finish();
                     break;
@@ -60,7 +78,7 @@ public class MainActivity extends FlutterActivity {
                         response.put("widgetId", pendingWidgetId);
                         response.put("widgetType", pendingWidgetType);
                         response.put("route", pendingRoute);
-                        Log.d(TAG, "Returning pending action: widgetId=" + pendingWidgetId + " route=" + pendingRoute);
+                        WidgetLog.d(TAG, "Returning pending action: widgetId={} route={}", pendingWidgetId, pendingRoute);
                         clearPendingConfig();
                         result.success(response);
                     } else {
@@ -74,11 +92,20 @@ public class MainActivity extends FlutterActivity {
         
         // Process any pending intent after engine is ready
         if (pendingWidgetId != AppWidgetManager.INVALID_APPWIDGET_ID && pendingRoute != null) {
-            Log.d(TAG, "Processing pending intent after engine ready");
+            WidgetLog.d(TAG, "Processing pending intent after engine ready");
             forwardIntentToFlutter();
         }
     }
 
+    @Override
+    public void cleanUpFlutterEngine(@NonNull FlutterEngine flutterEngine) {
+        super.cleanUpFlutterEngine(flutterEngine);
+        // Don't leave a destroyed engine in the cache for widget taps
+        if (FlutterEngineCache.getInstance().get("main_engine") == flutterEngine) {
+            FlutterEngineCache.getInstance().remove("main_engine");
+        }
+    }
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -88,7 +115,7 @@ public class MainActivity extends FlutterActivity {
     @Override
     protected void onNewIntent(@NonNull Intent intent) {
         super.onNewIntent(intent);
-        Log.d(TAG, "onNewIntent received");
+        WidgetLog.d(TAG, "onNewIntent received");
         setIntent(intent);
         handleIntent(intent);
     }
@@ -101,7 +128,7 @@ public class MainActivity extends FlutterActivity {
         int widgetId = intent.getIntExtra("widgetId", AppWidgetManager.INVALID_APPWIDGET_ID);
         String widgetType = intent.getStringExtra("widgetType");
         
-        Log.d(TAG, "handleIntent: route=" + route + " widgetId=" + widgetId);
+        WidgetLog.d(TAG, "handleIntent: route={} widgetId={}", route, widgetId);
         
         if ("/widget-config".equals(route) && widgetId != AppWidgetManager.INVALID_APPWIDGET_ID) {
             pendingWidgetId = widgetId;
@@ -119,7 +146,7 @@ public class MainActivity extends FlutterActivity {
         String action = intent.getStringExtra("action");
         if ("openDoor".equals(action)) {
             String doorIdentifier = intent.getStringExtra("doorIdentifier");
-            Log.d(TAG, "openDoor action: widgetId=" + widgetId + " door=" + doorIdentifier);
+            WidgetLog.i(TAG, "openDoor action: widgetId={} door={}", widgetId, doorIdentifier);
             // This will be handled by WidgetActionActivity directly via MethodChannel
         }
     }
@@ -127,7 +154,7 @@ public class MainActivity extends FlutterActivity {
     private void forwardIntentToFlutter() {
         if (methodChannel == null || pendingWidgetId == AppWidgetManager.INVALID_APPWIDGET_ID) return;
         
-        Log.d(TAG, "Forwarding to Flutter: widgetId=" + pendingWidgetId + " route=" + pendingRoute);
+        WidgetLog.d(TAG, "Forwarding to Flutter: widgetId={} route={}", pendingWidgetId, pendingRoute);
         
         java.util.Map<String, Object> args = new java.util.HashMap<>();
         args.put("widgetId", pendingWidgetId);
@@ -143,22 +170,20 @@ public class MainActivity extends FlutterActivity {
             int widgetId = (int) args.get("widgetId");
             String doorName = (String) args.get("doorName");
             
-            Log.d(TAG, "updateWidget: widgetId=" + widgetId + " doorName=" + doorName);
+            WidgetLog.d(TAG, "updateWidget: widgetId={} doorName={}", widgetId, doorName);
             
-            // Update the widget UI
-            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-            DoorWidget1x4.updateAppWidget(this, appWidgetManager, widgetId);
-            DoorWidget1x1.updateAppWidget(this, appWidgetManager, widgetId);
+            // Update the widget UI on the widget thread
+            WidgetRenderer.renderAsync(this, widgetId, null);
             
             result.success(true);
         } catch (Exception e) {
-            Log.e(TAG, "updateWidget error: " + e.getMessage());
+            WidgetLog.e(TAG, e, "updateWidget error");
             result.error("UPDATE_ERROR", e.getMessage(), null);
         }
     }
 
     private void handleShowNotFound(Object arguments, MethodChannel.Result result) {
-        Log.d(TAG, "showNotFound called");
+        WidgetLog.d(TAG, "showNotFound called");
         result.success(true);
     }
 
@@ -168,29 +193,103 @@ public class MainActivity extends FlutterActivity {
             int widgetId = (int) args.get("widgetId");
             String doorName = (String) args.get("doorName");
             String doorIdentifier = (String) args.get("doorIdentifier");
+            java.util.List<String> groupMembers = new java.util.ArrayList<>();
+            Object members = args.get("groupMembers");
+            if (members instanceof java.util.List) {
+                for (Object member : (java.util.List<?>) members) {
+                    if (member instanceof String) groupMembers.add((String) member);
+                }
+            }
             
-            Log.d(TAG, "saveDoorConfig: widgetId=" + widgetId + " doorName=" + doorName + " doorId=" + doorIdentifier);
-            
-            // Save to storage
-            WidgetStorageManager storage = new WidgetStorageManager(this);
-            storage.saveDoorInfo(widgetId, doorName, doorIdentifier);
-            
-            // Verify save
-            WidgetStorageManager.DoorInfo verify = storage.getDoorInfo(widgetId);
-            Log.d(TAG, "saveDoorConfig verify: " + (verify != null ? "OK" : "FAILED"));
-            
-            // Update widget UI
-            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-            DoorWidget1x4.updateAppWidget(this, appWidgetManager, widgetId);
-            DoorWidget1x1.updateAppWidget(this, appWidgetManager, widgetId);
+            WidgetLog.i(TAG, "saveDoorConfig: widgetId={} doorName={} doorId={} members={}",
+                widgetId, doorName, doorIdentifier, groupMembers.size());
             
-            result.success(true);
+            // Save + verify + widget render run on the widget thread
+            WidgetStorageManager.saveDoorInfoAsync(this, widgetId, doorName, doorIdentifier, groupMembers, verified -> {
+                if (Boolean.TRUE.equals(verified)) {
+                    WidgetLog.i(TAG, "saveDoorConfig verify: OK");
+                    result.success(true);
+                } else {
+                    // Picker must not report success for a widget that was not stored
+                    WidgetLog.e(TAG, "saveDoorConfig verify: FAILED widgetId={}", widgetId);
+                    result.error("SAVE_ERROR", "Door config was not stored", null);
+                }
+            });
         } catch (Exception e) {
-            Log.e(TAG, "saveDoorConfig error: " + e.getMessage());
+            WidgetLog.e(TAG, e, "saveDoorConfig error");
             result.error("SAVE_ERROR", e.getMessage(), null);
         }
     }
     
+    private void handleSetKeepWarmEngine(Object arguments, MethodChannel.Result result) {
+        try {
+            java.util.Map<String, Object> args = (java.util.Map<String, Object>) arguments;
+            boolean enabled = Boolean.TRUE.equals(args.get("enabled"));
+
+            WidgetLog.i(TAG, "setKeepWarmEngine: enabled={}", enabled);
+
+            if (enabled && !EngineWarmService.hasBluetoothPermissions(this)) {
+                // Foreground start would throw on API 34+ - keep the service off
+                WidgetLog.w(TAG, "setKeepWarmEngine: Bluetooth permission missing, not starting");
+                EngineWarmService.stop(this);
+                result.success(false);
+                return;
+            }
+            if (enabled) {
+                EngineWarmService.start(this);
+            } else {
+                EngineWarmService.stop(this);
+            }
+            result.success(true);
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "setKeepWarmEngine error");
+            result.error("KEEP_WARM_ERROR", e.getMessage(), null);
+        }
+    }
+    
+    private void handleGetWidgetBindings(MethodChannel.Result result) {
+        final android.content.Context appContext = getApplicationContext();
+        WidgetExecutor.submit(() -> {
+            WidgetStorageManager storage = new WidgetStorageManager(appContext);
+            int tileWidgetId = storage.getTileWidgetId();
+            java.util.List<java.util.Map<String, Object>> bindings = new java.util.ArrayList<>();
+            for (java.util.Map.Entry<Integer, WidgetStorageManager.DoorInfo> entry : storage.getAllDoorInfo().entrySet()) {
+                java.util.Map<String, Object> binding = new java.util.HashMap<>();
+                binding.put("widgetId", entry.getKey());
+                binding.put("doorName", entry.getValue().doorName);
+                binding.put("doorIdentifier", entry.getValue().doorIdentifier);
+                binding.put("groupMembers", entry.getValue().groupMembers);
+                binding.put("tile", entry.getKey() == tileWidgetId);
+                bindings.add(binding);
+            }
+            return bindings;
+        }, result::success);
+    }
+
+    private void handleSetTileWidget(Object arguments, MethodChannel.Result result) {
+        try {
+            java.util.Map<String, Object> args = (java.util.Map<String, Object>) arguments;
+            int widgetId = (int) args.get("widgetId");
+
+            WidgetLog.i(TAG, "setTileWidget: widgetId={}", widgetId);
+
+            final android.content.Context appContext = getApplicationContext();
+            WidgetExecutor.submit(() -> {
+                new WidgetStorageManager(appContext).setTileWidgetId(widgetId);
+                return true;
+            }, saved -> {
+                // Redraw the tile with the new door name
+                if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
+                    DoorTileService.requestUpdate(appContext);
+                }
+                result.success(true);
+            });
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "setTileWidget error");
+            result.error("TILE_ERROR", e.getMessage(), null);
+        }
+    }
+
     public void clearPendingConfig() {
         pendingWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
         pendingWidgetType = null;
@@ -0,0 +1,168 @@
+package com.example.pfd6000.widget;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.dart.DartExecutor;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Sends openDoor to Flutter on behalf of any app component
+ * Engine order: main engine (has an activity), keep-warm engine, else a headless engine
+ * Only the main engine may request runtime permissions (hasActivity)
+ * Holds only the application context, so a request may outlive its caller
+ * Main thread only
+ */
+public final class DoorOpenDispatcher {
+    private static final String TAG = "DOOR_DISPATCH";
+    private static final String CHANNEL_NAME = "enka_gs_widget";
+    private static final String MAIN_ENGINE_ID = "main_engine";
+    private static final long HEADLESS_WARMUP_MS = 800;
+
+    /**
+     * Delivered once per request on the main thread, never after cancel()
+     */
+    public interface ResultListener {
+        void onResult(boolean success, String message);
+    }
+
+    /**
+     * One openDoor call - cancel() drops its result and frees a headless engine
+     */
+    public static final class Request {
+        private final ResultListener listener;
+        private FlutterEngine localEngine;
+        private boolean finished = false;
+
+        private Request(ResultListener listener) {
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            if (finished) return;
+            finished = true;
+            release();
+        }
+
+        private void deliver(boolean success, String message) {
+            if (finished) return;
+            finished = true;
+            release();
+            listener.onResult(success, message);
+        }
+
+        private void release() {
+            WidgetExecutor.cancelMain(this);
+            if (localEngine != null) {
+                localEngine.destroy();
+                localEngine = null;
+            }
+        }
+    }
+
+    private DoorOpenDispatcher() {
+    }
+
+    public static Request open(Context context, int widgetId, WidgetStorageManager.DoorInfo doorInfo,
+                               ResultListener listener) {
+        final Context appContext = context.getApplicationContext();
+        final Request request = new Request(listener);
+        WidgetLog.i(TAG, "open: widgetId={} door={}", widgetId, doorInfo.doorName);
+
+        // Prefer the main engine while MainActivity is alive, then the keep-warm engine
+        FlutterEngine engine = FlutterEngineCache.getInstance().get(MAIN_ENGINE_ID);
+        if (engine != null) {
+            EngineWarmService.recordEngineLookup(appContext, EngineWarmService.LOOKUP_MAIN);
+            WidgetLog.d(TAG, "open: using main FlutterEngine");
+            invoke(appContext, engine, true, widgetId, doorInfo, request);
+            return request;
+        }
+        engine = FlutterEngineCache.getInstance().get(EngineWarmService.WARM_ENGINE_ID);
+        EngineWarmService.recordEngineLookup(appContext,
+            engine != null ? EngineWarmService.LOOKUP_WARM : EngineWarmService.LOOKUP_MISS);
+
+        if (engine != null) {
+            WidgetLog.d(TAG, "open: using keep-warm FlutterEngine");
+            invoke(appContext, engine, false, widgetId, doorInfo, request);
+            return request;
+        }
+
+        WidgetLog.i(TAG, "open: no cached engine, creating headless FlutterEngine");
+        try {
+            request.localEngine = new FlutterEngine(appContext);
+            request.localEngine.getDartExecutor().executeDartEntrypoint(
+                DartExecutor.DartEntrypoint.createDefault()
+            );
+            WidgetExecutor.postToMainDelayed(request, () -> {
+                if (request.finished || request.localEngine == null) return;
+                WidgetLog.d(TAG, "open: executing on headless engine");
+                invoke(appContext, request.localEngine, false, widgetId, doorInfo, request);
+            }, HEADLESS_WARMUP_MS);
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "open: failed to create headless engine");
+            request.deliver(false, "Engine başlatılamadı");
+        }
+        return request;
+    }
+
+    private static void invoke(Context appContext, FlutterEngine engine, boolean hasActivity, int widgetId,
+                               WidgetStorageManager.DoorInfo doorInfo, Request request) {
+        MethodChannel channel = new MethodChannel(
+            engine.getDartExecutor().getBinaryMessenger(),
+            CHANNEL_NAME
+        );
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("widgetId", widgetId);
+        args.put("doorIdentifier", doorInfo.doorIdentifier);
+        args.put("doorName", doorInfo.doorName);
+        // Activity-less engines must not request permissions (permission_handler needs an activity)
+        args.put("hasActivity", hasActivity);
+        if (doorInfo.snapshot != null) {
+            // Fresh snapshot lets Dart connect by address without scanning
+            args.put("snapshot", doorInfo.snapshot.toMap());
+        }
+        if (doorInfo.isGroup()) {
+            // Dart connects to the strongest members in parallel
+            args.put("groupMembers", doorInfo.groupMembers);
+        }
+
+        WidgetLog.d(TAG, "invoke: openDoor");
+        channel.invokeMethod("openDoor", args, new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                boolean success = false;
+                if (result instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) result;
+                    success = Boolean.TRUE.equals(map.get("success"));
+                    WidgetStorageManager.DoorSnapshot snapshot =
+                        WidgetStorageManager.DoorSnapshot.fromMap(map.get("snapshot"));
+                    if (success && snapshot != null) {
+                        // Keyed by the door that answered - a group member may win
+                        WidgetStorageManager.saveSnapshotAsync(appContext, snapshot);
+                    }
+                } else if (result instanceof Boolean) {
+                    success = (Boolean) result;
+                }
+                WidgetLog.i(TAG, "invoke: result={}", success);
+                request.deliver(success, success ? "Komut gönderildi" : "Kapı tespit edilemedi");
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                WidgetLog.e(TAG, "invoke: error={} msg={}", errorCode, errorMessage);
+                request.deliver(false, "Hata: " + errorMessage);
+            }
+
+            @Override
+            public void notImplemented() {
+                WidgetLog.e(TAG, "invoke: notImplemented - handler not registered?");
+                request.deliver(false, "Servis hazır değil");
+            }
+        });
+    }
+}
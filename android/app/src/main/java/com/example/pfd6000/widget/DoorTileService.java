@@ -0,0 +1,168 @@
+package com.example.pfd6000.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.drawable.Icon;
+import android.os.Build;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+
+import androidx.annotation.RequiresApi;
+
+import com.example.pfd6000.R;
+
+/**
+ * Quick Settings tile that opens the door of a chosen widget configuration
+ * Same pipeline as widget taps (DoorOpenDispatcher), no activity, no toast -
+ * progress and result are shown through the tile state only
+ * State is process-wide so a request survives the panel closing
+ * Declared as an active tile: the system binds it only after
+ * requestListeningState (requestUpdate), so every state or binding change asks for it
+ */
+@RequiresApi(api = Build.VERSION_CODES.N)
+public class DoorTileService extends TileService {
+    private static final String TAG = "DOOR_TILE";
+
+    private enum Phase { IDLE, LOADING, SUCCESS, ERROR }
+
+    // Main thread only
+    private static final Object TOKEN = new Object();
+    private static Phase phase = Phase.IDLE;
+    private static String doorName = null;
+    private static DoorOpenDispatcher.Request request;
+    private static DoorTileService listening;
+
+    /**
+     * Ask the system to bind the tile and redraw it (binding or door name changed)
+     */
+    public static void requestUpdate(Context context) {
+        Context appContext = context.getApplicationContext();
+        TileService.requestListeningState(appContext, new ComponentName(appContext, DoorTileService.class));
+    }
+
+    @Override
+    public void onTileAdded() {
+        super.onTileAdded();
+        requestUpdate(this);
+    }
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        listening = this;
+        render();
+        // Bound on request only - re-read the binding every time
+        WidgetStorageManager.getTileBindingAsync(this, binding -> {
+            doorName = binding != null ? binding.doorInfo.doorName : null;
+            if (listening == this) render();
+        });
+    }
+
+    @Override
+    public void onStopListening() {
+        if (listening == this) listening = null;
+        super.onStopListening();
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        if (phase == Phase.LOADING) {
+            WidgetLog.d(TAG, "onClick: request already running");
+            return;
+        }
+        final Context appContext = getApplicationContext();
+        WidgetStorageManager.getTileBindingAsync(appContext, binding -> {
+            if (binding == null) {
+                WidgetLog.d(TAG, "onClick: no widget configuration to open");
+                doorName = null;
+                refresh(appContext);
+                return;
+            }
+            doorName = binding.doorInfo.doorName;
+            start(appContext, binding);
+        });
+    }
+
+    private static void start(Context appContext, WidgetStorageManager.TileBinding binding) {
+        if (phase == Phase.LOADING) return;
+        WidgetLog.i(TAG, "start: widgetId={} door={}", binding.widgetId, binding.doorInfo.doorName);
+
+        WidgetExecutor.cancelMain(TOKEN);
+        phase = Phase.LOADING;
+        refresh(appContext);
+
+        WidgetExecutor.postToMainDelayed(TOKEN, () -> {
+            if (phase != Phase.LOADING) return;
+            WidgetLog.e(TAG, "timeout: no response from Flutter");
+            if (request != null) request.cancel();
+            finish(appContext, false);
+        }, WidgetFeedbackController.TIMEOUT_MS);
+
+        request = DoorOpenDispatcher.open(appContext, binding.widgetId, binding.doorInfo,
+            (success, message) -> {
+                WidgetLog.i(TAG, "result: success={} msg={}", success, message);
+                finish(appContext, success);
+            });
+    }
+
+    private static void finish(Context appContext, boolean success) {
+        if (phase != Phase.LOADING) return;
+        WidgetExecutor.cancelMain(TOKEN);
+        request = null;
+        phase = success ? Phase.SUCCESS : Phase.ERROR;
+        refresh(appContext);
+
+        // Back to idle after 3 seconds, same as the widgets
+        WidgetExecutor.postToMainDelayed(TOKEN, () -> {
+            phase = Phase.IDLE;
+            refresh(appContext);
+        }, WidgetFeedbackController.REVERT_MS);
+    }
+
+    /**
+     * Redraw now if bound, otherwise ask the system to rebind
+     */
+    private static void refresh(Context appContext) {
+        if (listening != null) {
+            listening.render();
+        } else {
+            requestUpdate(appContext);
+        }
+    }
+
+    private void render() {
+        Tile tile = getQsTile();
+        if (tile == null) return;
+
+        String status;
+        switch (phase) {
+            case LOADING:
+                tile.setState(Tile.STATE_ACTIVE);
+                status = "Bağlanıyor...";
+                break;
+            case SUCCESS:
+                tile.setState(Tile.STATE_ACTIVE);
+                status = "Başarılı!";
+                break;
+            case ERROR:
+                tile.setState(Tile.STATE_INACTIVE);
+                status = "Başarısız";
+                break;
+            default:
+                tile.setState(doorName != null ? Tile.STATE_INACTIVE : Tile.STATE_UNAVAILABLE);
+                status = doorName != null ? "Dokun: aç" : "Widget ayarlanmadı";
+                break;
+        }
+
+        String label = doorName != null ? doorName : "ENKA Kapı";
+        tile.setIcon(Icon.createWithResource(this, R.drawable.ic_door));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            tile.setLabel(label);
+            tile.setSubtitle(status);
+        } else {
+            tile.setLabel(phase == Phase.IDLE ? label : status);
+        }
+        tile.updateTile();
+    }
+}
@@ -5,7 +5,6 @@ import android.appwidget.AppWidgetProvider;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.util.Log;
 import android.widget.RemoteViews;
 
 import com.example.pfd6000.R;
@@ -19,14 +18,14 @@ public class DoorWidget1x1 extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        Log.d(TAG, "onUpdate: widgetCount=" + appWidgetIds.length);
+        WidgetLog.d(TAG, "onUpdate: widgetCount={}", appWidgetIds.length);
         for (int appWidgetId : appWidgetIds) {
             updateAppWidget(context, appWidgetManager, appWidgetId);
         }
     }
 
     public static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        Log.d(TAG, "updateAppWidget: widgetId=" + appWidgetId);
+        WidgetLog.d(TAG, "updateAppWidget: widgetId={}", appWidgetId);
         
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_door_1x1);
         
@@ -39,11 +38,11 @@ public class DoorWidget1x1 extends AppWidgetProvider {
         
         if (doorInfo != null) {
             // Configured: WHITE door icon
-            Log.d(TAG, "updateAppWidget: configured door=" + doorInfo.doorName);
+            WidgetLog.d(TAG, "updateAppWidget: configured door={}", doorInfo.doorName);
             views.setInt(R.id.widget_icon, "setColorFilter", 0xFFFFFFFF); // White
         } else {
             // Not configured: RED door icon
-            Log.d(TAG, "updateAppWidget: NOT configured");
+            WidgetLog.d(TAG, "updateAppWidget: NOT configured");
             views.setInt(R.id.widget_icon, "setColorFilter", 0xFFE53935); // Material Red 600
         }
         
@@ -63,16 +62,13 @@ public class DoorWidget1x1 extends AppWidgetProvider {
         views.setOnClickPendingIntent(R.id.widget_container, pendingIntent);
         
         appWidgetManager.updateAppWidget(appWidgetId, views);
-        Log.d(TAG, "updateAppWidget: complete for widgetId=" + appWidgetId);
+        WidgetLog.d(TAG, "updateAppWidget: complete for widgetId={}", appWidgetId);
     }
 
 
     @Override
     public void onDeleted(Context context, int[] appWidgetIds) {
-        WidgetStorageManager storage = new WidgetStorageManager(context);
-        for (int appWidgetId : appWidgetIds) {
-            storage.removeDoorInfo(appWidgetId);
-        }
+        WidgetStorageManager.removeDoorInfoAsync(context, appWidgetIds);
     }
 
     @Override
@@ -0,0 +1,239 @@
+package com.example.pfd6000.widget;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.Debug;
+import android.os.IBinder;
+
+import com.example.pfd6000.R;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.FlutterInjector;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.dart.DartExecutor;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Optional foreground service that keeps a FlutterEngine warm for widget taps
+ * Runs the lightweight `widgetEngineMain` Dart entrypoint (widget handler only)
+ * Engine goes into FlutterEngineCache under WARM_ENGINE_ID once Dart reports ready
+ * Also keeps cache hit/miss and engine memory stats for tuning
+ */
+public class EngineWarmService extends Service {
+    private static final String TAG = "ENGINE_WARM";
+    public static final String WARM_ENGINE_ID = "widget_engine";
+    private static final String CHANNEL_NAME = "enka_gs_widget";
+    private static final String DART_ENTRYPOINT = "widgetEngineMain";
+    private static final String NOTIFICATION_CHANNEL_ID = "widget_engine";
+    private static final int NOTIFICATION_ID = 4201;
+
+    private static final String STATS_PREFS = "enka_gs_engine_stats";
+    // Main-engine taps are counted apart: they say nothing about the keep-warm engine
+    private static final String KEY_HITS = "warm_hits";
+    private static final String KEY_MISSES = "warm_misses";
+    private static final String KEY_MAIN = "main_engine_taps";
+
+    /** Engine a widget tap ended up on */
+    public static final int LOOKUP_MAIN = 0;
+    public static final int LOOKUP_WARM = 1;
+    public static final int LOOKUP_MISS = 2;
+
+    private static volatile boolean running = false;
+    private static volatile long engineMemoryKb = -1;
+
+    private FlutterEngine engine;
+
+    /**
+     * Start the keep-warm service (call when auto-open + keep-warm are enabled)
+     */
+    public static void start(Context context) {
+        Intent intent = new Intent(context, EngineWarmService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    /**
+     * Stop the keep-warm service and release its engine
+     */
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, EngineWarmService.class));
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Bluetooth runtime permissions the connectedDevice foreground type needs (API 31+)
+     * Without them startForeground throws on API 34+
+     */
+    public static boolean hasBluetoothPermissions(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) return true;
+        return context.checkSelfPermission(Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED
+            && context.checkSelfPermission(Manifest.permission.BLUETOOTH_SCAN) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Record which engine a widget tap used (LOOKUP_MAIN / LOOKUP_WARM / LOOKUP_MISS)
+     * Hit rate covers only taps without the main engine: warm hit vs headless start
+     * Persisted on the widget thread so stats survive process restarts
+     */
+    public static void recordEngineLookup(Context context, int lookup) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> {
+            SharedPreferences prefs = appContext.getSharedPreferences(STATS_PREFS, Context.MODE_PRIVATE);
+            String key = lookup == LOOKUP_MAIN ? KEY_MAIN : lookup == LOOKUP_WARM ? KEY_HITS : KEY_MISSES;
+            prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+        });
+    }
+
+    /**
+     * Read keep-warm stats: running, engineReady, hits, misses, mainEngine, hitRate, engineMemoryKb
+     */
+    public static void getStatsAsync(Context context, WidgetExecutor.Callback<Map<String, Object>> callback) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.submit(() -> {
+            SharedPreferences prefs = appContext.getSharedPreferences(STATS_PREFS, Context.MODE_PRIVATE);
+            int hits = prefs.getInt(KEY_HITS, 0);
+            int misses = prefs.getInt(KEY_MISSES, 0);
+            int total = hits + misses;
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("running", running);
+            stats.put("engineReady", FlutterEngineCache.getInstance().contains(WARM_ENGINE_ID));
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("mainEngine", prefs.getInt(KEY_MAIN, 0));
+            stats.put("hitRate", total > 0 ? (double) hits / total : 0.0);
+            stats.put("engineMemoryKb", engineMemoryKb);
+            return stats;
+        }, callback);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        WidgetLog.i(TAG, "onCreate");
+        if (!startInForeground()) {
+            stopSelf();
+            return;
+        }
+        running = true;
+        createEngine();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // No sticky restart into a foreground start that already failed
+        return running ? START_STICKY : START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        WidgetLog.i(TAG, "onDestroy");
+        running = false;
+        FlutterEngineCache.getInstance().remove(WARM_ENGINE_ID);
+        if (engine != null) {
+            engine.destroy();
+            engine = null;
+        }
+        engineMemoryKb = -1;
+        super.onDestroy();
+    }
+
+    private void createEngine() {
+        try {
+            long pssBeforeKb = Debug.getPss();
+
+            engine = new FlutterEngine(getApplicationContext());
+
+            // Dart calls widgetHandlerReady once its openDoor handler is registered
+            new MethodChannel(engine.getDartExecutor().getBinaryMessenger(), CHANNEL_NAME)
+                .setMethodCallHandler((call, result) -> {
+                    if ("widgetHandlerReady".equals(call.method)) {
+                        FlutterEngineCache.getInstance().put(WARM_ENGINE_ID, engine);
+                        engineMemoryKb = Math.max(0, Debug.getPss() - pssBeforeKb);
+                        WidgetLog.i(TAG, "engine ready, cached as {} (~{} KB)", WARM_ENGINE_ID, engineMemoryKb);
+                        result.success(true);
+                    } else if ("getNativeLogs".equals(call.method)) {
+                        result.success(WidgetLog.snapshot());
+                    } else {
+                        result.notImplemented();
+                    }
+                });
+
+            String appBundlePath = FlutterInjector.instance().flutterLoader().findAppBundlePath();
+            engine.getDartExecutor().executeDartEntrypoint(
+                new DartExecutor.DartEntrypoint(appBundlePath, DART_ENTRYPOINT)
+            );
+            WidgetLog.i(TAG, "engine started: entrypoint={}", DART_ENTRYPOINT);
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "createEngine failed");
+            stopSelf();
+        }
+    }
+
+    /**
+     * Returns false when the system refuses the foreground start
+     * (permission revoked, or background start not allowed)
+     */
+    private boolean startInForeground() {
+        NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (nm != null && nm.getNotificationChannel(NOTIFICATION_CHANNEL_ID) == null) {
+                NotificationChannel channel = new NotificationChannel(
+                    NOTIFICATION_CHANNEL_ID,
+                    "Widget Hazırlığı",
+                    NotificationManager.IMPORTANCE_MIN
+                );
+                channel.setShowBadge(false);
+                nm.createNotificationChannel(channel);
+            }
+            builder = new Notification.Builder(this, NOTIFICATION_CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+
+        Notification notification = builder
+            .setSmallIcon(R.drawable.ic_door)
+            .setContentTitle("ENKA GS")
+            .setContentText("Widget hızlı kapı açma için hazır")
+            .setOngoing(true)
+            .build();
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification,
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
+            }
+            return true;
+        } catch (SecurityException | IllegalStateException e) {
+            // IllegalStateException covers ForegroundServiceStartNotAllowedException (API 31+)
+            WidgetLog.e(TAG, e, "startForeground refused - keep-warm stopped");
+            return false;
+        }
+    }
+}
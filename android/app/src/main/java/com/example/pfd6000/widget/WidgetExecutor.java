@@ -0,0 +1,93 @@
+package com.example.pfd6000.widget;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Small dedicated executor for widget storage and RemoteViews work
+ * Single worker thread keeps save -> verify -> render ordering intact
+ * Results are delivered back on the main thread through callbacks
+ */
+public final class WidgetExecutor {
+    private static final String TAG = "WIDGET_EXECUTOR";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "widget-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * Result callback - always invoked on the main thread
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private WidgetExecutor() {
+    }
+
+    /**
+     * Run a fire-and-forget job on the widget thread
+     */
+    public static void execute(Runnable task) {
+        EXECUTOR.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                WidgetLog.e(TAG, e, "execute: task failed");
+            }
+        });
+    }
+
+    /**
+     * Run a job on the widget thread and deliver its result on the main thread
+     * A failing job delivers null
+     */
+    public static <T> void submit(Callable<T> task, Callback<T> callback) {
+        EXECUTOR.execute(() -> {
+            T result = null;
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                WidgetLog.e(TAG, e, "submit: task failed");
+            }
+            if (callback != null) {
+                final T delivered = result;
+                MAIN_HANDLER.post(() -> callback.onResult(delivered));
+            }
+        });
+    }
+
+    /**
+     * Post a job to the main thread
+     */
+    public static void postToMain(Runnable task) {
+        MAIN_HANDLER.post(task);
+    }
+
+    /**
+     * Post a delayed job to the main thread, cancellable via its token
+     */
+    public static void postToMainDelayed(Object token, Runnable task, long delayMs) {
+        MAIN_HANDLER.postAtTime(task, token, SystemClock.uptimeMillis() + delayMs);
+    }
+
+    /**
+     * Drop every pending main-thread job posted with this token
+     */
+    public static void cancelMain(Object token) {
+        MAIN_HANDLER.removeCallbacksAndMessages(token);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.pfd6000.widget;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.os.VibratorManager;
+import android.util.SparseArray;
+import android.widget.Toast;
+
+/**
+ * Application-scoped widget tap feedback: loading -> result -> revert
+ * One session per widget; taps while it is loading are ignored (the openDoor
+ * already running in Dart cannot be cancelled), a tap during the result replaces it
+ * Timeout and revert run on the shared main-thread scheduler (WidgetExecutor),
+ * keyed by session, and only the application context is held
+ * Main thread only
+ */
+public final class WidgetFeedbackController {
+    private static final String TAG = "WIDGET_FEEDBACK";
+    static final long TIMEOUT_MS = 15000;
+    static final long REVERT_MS = 3000;
+
+    private static WidgetFeedbackController instance;
+
+    private final Context appContext;
+    private final SparseArray<Session> sessions = new SparseArray<>();
+
+    private enum State { LOADING, RESULT, DONE }
+
+    /**
+     * Feedback cycle of a single tap, also the scheduler token for its callbacks
+     */
+    private static final class Session {
+        final int widgetId;
+        final String widgetType;
+        State state = State.LOADING;
+        DoorOpenDispatcher.Request request;
+
+        Session(int widgetId, String widgetType) {
+            this.widgetId = widgetId;
+            this.widgetType = widgetType;
+        }
+    }
+
+    private WidgetFeedbackController(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    public static WidgetFeedbackController get(Context context) {
+        if (instance == null) {
+            instance = new WidgetFeedbackController(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Short vibration on an open tap, before the BLE request starts
+     */
+    public void tapFeedback() {
+        vibrate(50);
+    }
+
+    /**
+     * Show loading and open the door
+     * Ignored while this widget's previous request is still loading, so a quick
+     * second tap does not start a second BLE attempt against the same door
+     */
+    public void openDoor(int widgetId, String widgetType, WidgetStorageManager.DoorInfo doorInfo) {
+        Session previous = sessions.get(widgetId);
+        if (previous != null && previous.state == State.LOADING) {
+            WidgetLog.d(TAG, "openDoor: request already running on widgetId={}", widgetId);
+            return;
+        }
+        if (previous != null) {
+            WidgetLog.d(TAG, "openDoor: replacing finished session on widgetId={}", widgetId);
+            end(previous);
+        }
+
+        Session session = new Session(widgetId, widgetType);
+        sessions.put(widgetId, session);
+
+        Toast.makeText(appContext, "Kapı açılıyor...", Toast.LENGTH_SHORT).show();
+        WidgetRenderer.renderLoadingAsync(appContext, widgetId, widgetType);
+        WidgetExecutor.postToMainDelayed(session, () -> onTimeout(session), TIMEOUT_MS);
+
+        session.request = DoorOpenDispatcher.open(appContext, widgetId, doorInfo,
+            (success, message) -> onResult(session, success, message));
+    }
+
+    private void onResult(Session session, boolean success, String message) {
+        if (sessions.get(session.widgetId) != session || session.state != State.LOADING) {
+            WidgetLog.d(TAG, "onResult: stale session ignored widgetId={}", session.widgetId);
+            return;
+        }
+        WidgetExecutor.cancelMain(session);
+        showResult(session, success, message);
+    }
+
+    private void onTimeout(Session session) {
+        if (sessions.get(session.widgetId) != session || session.state != State.LOADING) return;
+        WidgetLog.e(TAG, "onTimeout: no response from Flutter widgetId={}", session.widgetId);
+        if (session.request != null) {
+            session.request.cancel();
+        }
+        showResult(session, false, "Zaman aşımı");
+    }
+
+    private void showResult(Session session, boolean success, String message) {
+        WidgetLog.i(TAG, "showResult: widgetId={} success={} msg={}", session.widgetId, success, message);
+        session.state = State.RESULT;
+
+        Toast.makeText(appContext, message, Toast.LENGTH_SHORT).show();
+        if (success) {
+            vibrate(200);
+        } else {
+            vibrateError();
+        }
+
+        WidgetRenderer.renderResultAsync(appContext, session.widgetId, session.widgetType, success);
+
+        // Revert widget to normal state after 3 seconds
+        WidgetExecutor.postToMainDelayed(session, () -> {
+            if (sessions.get(session.widgetId) != session) return;
+            sessions.remove(session.widgetId);
+            session.state = State.DONE;
+            WidgetRenderer.renderAsync(appContext, session.widgetId, session.widgetType);
+        }, REVERT_MS);
+    }
+
+    /**
+     * Drop a finished session and its pending revert
+     */
+    private void end(Session session) {
+        WidgetExecutor.cancelMain(session);
+        session.state = State.DONE;
+        sessions.remove(session.widgetId);
+    }
+
+    private void vibrate(long durationMs) {
+        try {
+            Vibrator vibrator = getVibrator();
+            if (vibrator != null && vibrator.hasVibrator()) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    vibrator.vibrate(VibrationEffect.createOneShot(durationMs, VibrationEffect.DEFAULT_AMPLITUDE));
+                }
+            }
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "vibrate error");
+        }
+    }
+
+    private void vibrateError() {
+        try {
+            Vibrator vibrator = getVibrator();
+            if (vibrator != null && vibrator.hasVibrator()) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    vibrator.vibrate(VibrationEffect.createWaveform(new long[]{0, 100, 100, 100}, -1));
+                }
+            }
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "vibrateError error");
+        }
+    }
+
+    private Vibrator getVibrator() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            VibratorManager vm = (VibratorManager) appContext.getSystemService(Context.VIBRATOR_MANAGER_SERVICE);
+            return vm != null ? vm.getDefaultVibrator() : null;
+        } else {
+            return (Vibrator) appContext.getSystemService(Context.VIBRATOR_SERVICE);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.pfd6000.widget;
+
+import android.util.Log;
+
+import com.example.pfd6000.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Level-gated logger for the native widget / channel code
+ * Messages use "{}" placeholders and are formatted only when the level is on
+ * Debug is compiled out of release builds (BuildConfig.DEBUG is a constant there,
+ * and R8 drops d() call sites together with their arguments - proguard-rules.pro)
+ * Every logged event also goes to a fixed-size ring buffer, read over the
+ * enka_gs_widget channel (getNativeLogs) for field diagnostics
+ * Thread-safe
+ */
+public final class WidgetLog {
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    static final int CAPACITY = 200;
+
+    private static final int MIN_LEVEL = BuildConfig.DEBUG ? DEBUG : INFO;
+
+    // Ring buffer - guarded by RING
+    private static final Object RING = new Object();
+    private static final Entry[] entries = new Entry[CAPACITY];
+    private static int next = 0;
+    private static int size = 0;
+
+    /**
+     * One logged event
+     */
+    private static final class Entry {
+        final long timeMillis;
+        final int level;
+        final String tag;
+        final String thread;
+        final String message;
+
+        Entry(long timeMillis, int level, String tag, String thread, String message) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.tag = tag;
+            this.thread = thread;
+            this.message = message;
+        }
+    }
+
+    private WidgetLog() {
+    }
+
+    public static boolean isEnabled(int level) {
+        return level >= MIN_LEVEL;
+    }
+
+    // Fixed-arity overloads keep hot paths free of varargs arrays
+
+    public static void d(String tag, String message) {
+        if (BuildConfig.DEBUG) log(DEBUG, tag, null, message, null);
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        if (BuildConfig.DEBUG) log(DEBUG, tag, null, format, new Object[]{arg});
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (BuildConfig.DEBUG) log(DEBUG, tag, null, format, new Object[]{arg1, arg2});
+    }
+
+    public static void d(String tag, String format, Object... args) {
+        if (BuildConfig.DEBUG) log(DEBUG, tag, null, format, args);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, null, message, null);
+    }
+
+    public static void i(String tag, String format, Object... args) {
+        log(INFO, tag, null, format, args);
+    }
+
+    public static void w(String tag, String format, Object... args) {
+        log(WARN, tag, null, format, args);
+    }
+
+    public static void e(String tag, String format, Object... args) {
+        log(ERROR, tag, null, format, args);
+    }
+
+    /**
+     * Error with a throwable - stack trace goes to logcat, its message to the ring
+     */
+    public static void e(String tag, Throwable error, String format, Object... args) {
+        log(ERROR, tag, error, format, args);
+    }
+
+    private static void log(int level, String tag, Throwable error, String format, Object[] args) {
+        if (!isEnabled(level)) return;
+
+        String message = args == null || args.length == 0 ? format : format(format, args);
+        if (error != null) {
+            message = message + " - " + error;
+        }
+        Log.println(level, tag, message);
+        if (error != null) {
+            Log.println(level, tag, Log.getStackTraceString(error));
+        }
+
+        Entry entry = new Entry(System.currentTimeMillis(), level, tag,
+            Thread.currentThread().getName(), message);
+        synchronized (RING) {
+            entries[next] = entry;
+            next = (next + 1) % CAPACITY;
+            if (size < CAPACITY) size++;
+        }
+    }
+
+    /**
+     * Replace each "{}" with the next argument; extra arguments are appended
+     */
+    static String format(String format, Object[] args) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        int at;
+        while (argIndex < args.length && (at = format.indexOf("{}", start)) >= 0) {
+            sb.append(format, start, at).append(args[argIndex++]);
+            start = at + 2;
+        }
+        sb.append(format, start, format.length());
+        while (argIndex < args.length) {
+            sb.append(' ').append(args[argIndex++]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Buffered events, oldest first, in MethodChannel form:
+     * {time, level (D/I/W/E), tag, thread, message}
+     */
+    public static List<Map<String, Object>> snapshot() {
+        Entry[] copy;
+        int count;
+        int first;
+        synchronized (RING) {
+            copy = entries.clone();
+            count = size;
+            first = (next - size + CAPACITY) % CAPACITY;
+        }
+        List<Map<String, Object>> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entry entry = copy[(first + i) % CAPACITY];
+            Map<String, Object> event = new HashMap<>();
+            event.put("time", entry.timeMillis);
+            event.put("level", levelName(entry.level));
+            event.put("tag", entry.tag);
+            event.put("thread", entry.thread);
+            event.put("message", entry.message);
+            events.add(event);
+        }
+        return events;
+    }
+
+    public static void clear() {
+        synchronized (RING) {
+            Arrays.fill(entries, null);
+            next = 0;
+            size = 0;
+        }
+    }
+
+    private static String levelName(int level) {
+        switch (level) {
+            case DEBUG:
+                return "D";
+            case INFO:
+                return "I";
+            case WARN:
+                return "W";
+            default:
+                return "E";
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.pfd6000.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.widget.RemoteViews;
+
+import com.example.pfd6000.R;
+
+/**
+ * Builds and pushes widget RemoteViews for every widget size
+ * Synchronous methods must run on the widget thread (WidgetExecutor)
+ * *Async variants hand the work off and return immediately
+ */
+public final class WidgetRenderer {
+    private static final String TAG = "WIDGET_RENDER";
+
+    static final int COLOR_LOADING = 0xFFFFC107;
+    static final int COLOR_SUCCESS = 0xFF4CAF50;
+    static final int COLOR_ERROR = 0xFFE53935;
+
+    private WidgetRenderer() {
+    }
+
+    /**
+     * Render the normal (idle) state of a widget
+     * @param widgetType "1x1" / "1x4" / "2x2", or null to resolve from the provider
+     */
+    public static void render(Context context, int widgetId, String widgetType) {
+        try {
+            AppWidgetManager awm = AppWidgetManager.getInstance(context);
+            String type = widgetType != null ? widgetType : resolveWidgetType(awm, widgetId);
+            if ("1x4".equals(type)) {
+                DoorWidget1x4.updateAppWidget(context, awm, widgetId);
+            } else if ("1x1".equals(type)) {
+                DoorWidget1x1.updateAppWidget(context, awm, widgetId);
+            } else if ("2x2".equals(type)) {
+                DoorWidget2x2.updateAppWidget(context, awm, widgetId);
+            } else {
+                WidgetLog.e(TAG, "render: unknown widget type for widgetId={}", widgetId);
+            }
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "render error");
+        }
+    }
+
+    /**
+     * Render the "Bağlanıyor..." state
+     */
+    public static void renderLoading(Context context, int widgetId, String widgetType) {
+        renderStatus(context, widgetId, widgetType, COLOR_LOADING, "Bağlanıyor...");
+    }
+
+    /**
+     * Render the success / failure state
+     */
+    public static void renderResult(Context context, int widgetId, String widgetType, boolean success) {
+        renderStatus(context, widgetId, widgetType,
+            success ? COLOR_SUCCESS : COLOR_ERROR,
+            success ? "Başarılı!" : "Başarısız");
+    }
+
+    public static void renderAsync(Context context, int widgetId, String widgetType) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> render(appContext, widgetId, widgetType));
+    }
+
+    public static void renderLoadingAsync(Context context, int widgetId, String widgetType) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> renderLoading(appContext, widgetId, widgetType));
+    }
+
+    public static void renderResultAsync(Context context, int widgetId, String widgetType, boolean success) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> renderResult(appContext, widgetId, widgetType, success));
+    }
+
+    private static void renderStatus(Context context, int widgetId, String widgetType, int color, String text) {
+        try {
+            AppWidgetManager awm = AppWidgetManager.getInstance(context);
+            String type = widgetType != null ? widgetType : resolveWidgetType(awm, widgetId);
+            if ("1x4".equals(type)) {
+                RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_door_1x4);
+                views.setInt(R.id.widget_door_icon, "setColorFilter", color);
+                views.setTextViewText(R.id.widget_action_text, text);
+                awm.updateAppWidget(widgetId, views);
+            } else if ("1x1".equals(type)) {
+                RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_door_1x1);
+                views.setInt(R.id.widget_icon, "setColorFilter", color);
+                awm.updateAppWidget(widgetId, views);
+            } else if ("2x2".equals(type)) {
+                RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_door_2x2);
+                views.setInt(R.id.widget_door_icon_2x2, "setColorFilter", color);
+                views.setTextViewText(R.id.widget_status_text, text);
+                awm.updateAppWidget(widgetId, views);
+            }
+        } catch (Exception e) {
+            WidgetLog.e(TAG, e, "renderStatus error");
+        }
+    }
+
+    /**
+     * Map a widget id to its size via the provider class
+     * @return "1x1" / "1x4" / "2x2", or null if the widget no longer exists
+     */
+    static String resolveWidgetType(AppWidgetManager awm, int widgetId) {
+        AppWidgetProviderInfo info = awm.getAppWidgetInfo(widgetId);
+        if (info == null || info.provider == null) return null;
+        String className = info.provider.getClassName();
+        if (DoorWidget1x4.class.getName().equals(className)) return "1x4";
+        if (DoorWidget1x1.class.getName().equals(className)) return "1x1";
+        if (DoorWidget2x2.class.getName().equals(className)) return "2x2";
+        return null;
+    }
+}
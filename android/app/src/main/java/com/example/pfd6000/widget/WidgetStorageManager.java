@@ -2,10 +2,19 @@ package com.example.pfd6000.widget;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.Log;
+import android.os.Build;
+import android.util.Base64;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * Manages per-widget door configuration storage
  * Uses SharedPreferences with versioned JSON format
@@ -15,6 +24,7 @@ public class WidgetStorageManager {
     private static final String PREFS_NAME = "enka_gs_widgets";
     private static final String KEY_VERSION = "storage_version";
     private static final String KEY_WIDGET_PREFIX = "widget_";
+    private static final String KEY_TILE_WIDGET = "tile_widget_id";
     private static final int CURRENT_VERSION = 1;
     
     private final SharedPreferences prefs;
@@ -34,23 +44,39 @@ public class WidgetStorageManager {
     
     /**
      * Save door info for a widget
+     * Synchronous commit() - call from the widget thread, not the main thread
+     * @return true if the write reached disk
+     */
+    public boolean saveDoorInfo(int widgetId, String doorName, String doorIdentifier) {
+        return saveDoorInfo(widgetId, doorName, doorIdentifier, Collections.emptyList());
+    }
+
+    /**
+     * Save door info for a widget bound to a door group
+     * doorIdentifier is the primary member; groupMembers lists every member
+     * (empty for a single-door binding)
      */
-    public void saveDoorInfo(int widgetId, String doorName, String doorIdentifier) {
+    public boolean saveDoorInfo(int widgetId, String doorName, String doorIdentifier, List<String> groupMembers) {
         String key = KEY_WIDGET_PREFIX + widgetId;
-        Log.d(TAG, "saveDoorInfo: widgetId=" + widgetId + " key=" + key + " door=" + doorName);
+        WidgetLog.d(TAG, "saveDoorInfo: widgetId={} key={} door={} members={}",
+            widgetId, key, doorName, groupMembers.size());
         
         try {
             JSONObject json = new JSONObject();
             json.put("doorName", doorName);
             json.put("doorIdentifier", doorIdentifier);
+            if (!groupMembers.isEmpty()) {
+                json.put("groupMembers", new JSONArray(groupMembers));
+            }
             json.put("version", CURRENT_VERSION);
             
-            prefs.edit().putString(key, json.toString()).commit(); // Use commit() for synchronous save
+            boolean saved = prefs.edit().putString(key, json.toString()).commit(); // Use commit() for synchronous save
             
-            Log.d(TAG, "saveDoorInfo: saved successfully to key=" + key);
+            WidgetLog.i(TAG, "saveDoorInfo: saved={} key={}", saved, key);
+            return saved;
         } catch (JSONException e) {
-            Log.e(TAG, "saveDoorInfo: JSON error - " + e.getMessage());
-            e.printStackTrace();
+            WidgetLog.e(TAG, e, "saveDoorInfo: JSON error");
+            return false;
         }
     }
     
@@ -61,10 +87,10 @@ public class WidgetStorageManager {
         String key = KEY_WIDGET_PREFIX + widgetId;
         String json = prefs.getString(key, null);
         
-        Log.d(TAG, "getDoorInfo: widgetId=" + widgetId + " key=" + key + " found=" + (json != null));
+        WidgetLog.d(TAG, "getDoorInfo: widgetId={} key={} found={}", widgetId, key, json != null);
         
         if (json == null) {
-            Log.d(TAG, "getDoorInfo: no data for widgetId=" + widgetId);
+            WidgetLog.d(TAG, "getDoorInfo: no data for widgetId={}", widgetId);
             return null;
         }
         
@@ -72,36 +98,317 @@ public class WidgetStorageManager {
             JSONObject obj = new JSONObject(json);
             DoorInfo info = new DoorInfo(
                 obj.getString("doorName"),
-                obj.getString("doorIdentifier")
+                obj.getString("doorIdentifier"),
+                DoorSnapshot.fromJson(obj.optJSONObject("snapshot")),
+                readMembers(obj.optJSONArray("groupMembers"))
             );
-            Log.d(TAG, "getDoorInfo: returning door=" + info.doorName);
+            WidgetLog.d(TAG, "getDoorInfo: returning door={}", info.doorName);
             return info;
         } catch (JSONException e) {
-            Log.e(TAG, "getDoorInfo: JSON parse error - " + e.getMessage());
-            e.printStackTrace();
+            WidgetLog.e(TAG, e, "getDoorInfo: JSON parse error");
             return null;
         }
     }
     
+    private static List<String> readMembers(JSONArray array) {
+        if (array == null) {
+            return Collections.emptyList();
+        }
+        List<String> members = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            String member = array.optString(i, null);
+            if (member != null && !member.isEmpty()) {
+                members.add(member);
+            }
+        }
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * All configured widgets, ordered by widget id
+     */
+    public Map<Integer, DoorInfo> getAllDoorInfo() {
+        Map<Integer, DoorInfo> bindings = new TreeMap<>();
+        for (String key : prefs.getAll().keySet()) {
+            if (!key.startsWith(KEY_WIDGET_PREFIX)) continue;
+            try {
+                int widgetId = Integer.parseInt(key.substring(KEY_WIDGET_PREFIX.length()));
+                DoorInfo info = getDoorInfo(widgetId);
+                if (info != null) {
+                    bindings.put(widgetId, info);
+                }
+            } catch (NumberFormatException e) {
+                WidgetLog.e(TAG, "getAllDoorInfo: bad key {}", key);
+            }
+        }
+        return bindings;
+    }
+
+    /**
+     * Widget configuration the Quick Settings tile opens
+     */
+    public void setTileWidgetId(int widgetId) {
+        WidgetLog.i(TAG, "setTileWidgetId: widgetId={}", widgetId);
+        prefs.edit().putInt(KEY_TILE_WIDGET, widgetId).apply();
+    }
+
+    public int getTileWidgetId() {
+        return prefs.getInt(KEY_TILE_WIDGET, -1);
+    }
+
+    /**
+     * Binding used by the tile: the chosen widget if still configured,
+     * otherwise the first configured widget, null if there is none
+     */
+    public TileBinding getTileBinding() {
+        int chosen = getTileWidgetId();
+        if (chosen >= 0) {
+            DoorInfo info = getDoorInfo(chosen);
+            if (info != null) {
+                return new TileBinding(chosen, info);
+            }
+        }
+        Map<Integer, DoorInfo> bindings = getAllDoorInfo();
+        if (bindings.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, DoorInfo> first = bindings.entrySet().iterator().next();
+        return new TileBinding(first.getKey(), first.getValue());
+    }
+
+    /**
+     * Store the last-seen snapshot on every widget bound to the snapshot's door,
+     * either directly or as a group member
+     * Older snapshots never overwrite newer ones
+     * @return number of widgets updated
+     */
+    public int saveSnapshot(DoorSnapshot snapshot) {
+        SharedPreferences.Editor editor = prefs.edit();
+        int updated = 0;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!entry.getKey().startsWith(KEY_WIDGET_PREFIX) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                JSONObject obj = new JSONObject((String) entry.getValue());
+                if (!snapshot.address.equals(obj.optString("doorIdentifier"))
+                    && !readMembers(obj.optJSONArray("groupMembers")).contains(snapshot.address)) {
+                    continue;
+                }
+                DoorSnapshot current = DoorSnapshot.fromJson(obj.optJSONObject("snapshot"));
+                if (current != null && current.seenAtMillis >= snapshot.seenAtMillis) {
+                    continue;
+                }
+                obj.put("snapshot", snapshot.toJson());
+                editor.putString(entry.getKey(), obj.toString());
+                updated++;
+            } catch (JSONException e) {
+                WidgetLog.e(TAG, e, "saveSnapshot: JSON error for {}", entry.getKey());
+            }
+        }
+        if (updated > 0) {
+            editor.apply();
+        }
+        WidgetLog.d(TAG, "saveSnapshot: door={} rssi={} widgets={}", snapshot.address, snapshot.rssi, updated);
+        return updated;
+    }
+
     /**
      * Remove door info when widget is deleted
      */
     public void removeDoorInfo(int widgetId) {
         String key = KEY_WIDGET_PREFIX + widgetId;
-        Log.d(TAG, "removeDoorInfo: widgetId=" + widgetId + " key=" + key);
+        WidgetLog.i(TAG, "removeDoorInfo: widgetId={} key={}", widgetId, key);
         prefs.edit().remove(key).apply();
     }
     
+    /**
+     * Read door info on the widget thread, deliver it on the main thread
+     * Also keeps the SharedPreferences load itself off the main thread
+     */
+    public static void getDoorInfoAsync(Context context, int widgetId,
+                                        WidgetExecutor.Callback<DoorInfo> callback) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.submit(
+            () -> new WidgetStorageManager(appContext).getDoorInfo(widgetId),
+            callback
+        );
+    }
+
+    /**
+     * Save + verify door info on the widget thread, then re-render the widget
+     * Callback receives true only if the saved entry reads back
+     */
+    public static void saveDoorInfoAsync(Context context, int widgetId, String doorName,
+                                         String doorIdentifier, List<String> groupMembers,
+                                         WidgetExecutor.Callback<Boolean> callback) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.submit(() -> {
+            WidgetStorageManager storage = new WidgetStorageManager(appContext);
+            boolean saved = storage.saveDoorInfo(widgetId, doorName, doorIdentifier, groupMembers);
+            boolean verified = saved && storage.getDoorInfo(widgetId) != null;
+            WidgetLog.d(TAG, "saveDoorInfoAsync verify: {}", verified ? "OK" : "FAILED");
+            WidgetRenderer.render(appContext, widgetId, null);
+            requestTileUpdate(appContext);
+            return verified;
+        }, callback);
+    }
+
+    /**
+     * Resolve the tile binding on the widget thread, deliver it on the main thread
+     */
+    public static void getTileBindingAsync(Context context, WidgetExecutor.Callback<TileBinding> callback) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.submit(() -> new WidgetStorageManager(appContext).getTileBinding(), callback);
+    }
+
+    /**
+     * Store a last-seen snapshot on the widget thread
+     */
+    public static void saveSnapshotAsync(Context context, DoorSnapshot snapshot) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> new WidgetStorageManager(appContext).saveSnapshot(snapshot));
+    }
+
+    /**
+     * Remove door info on the widget thread
+     */
+    public static void removeDoorInfoAsync(Context context, int[] widgetIds) {
+        final Context appContext = context.getApplicationContext();
+        WidgetExecutor.execute(() -> {
+            WidgetStorageManager storage = new WidgetStorageManager(appContext);
+            for (int widgetId : widgetIds) {
+                storage.removeDoorInfo(widgetId);
+            }
+            requestTileUpdate(appContext);
+        });
+    }
+
+    /**
+     * The tile shows a widget's door name; redraw it when configurations change
+     */
+    private static void requestTileUpdate(Context appContext) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            DoorTileService.requestUpdate(appContext);
+        }
+    }
+    
     /**
      * Door info data class
      */
     public static class DoorInfo {
         public final String doorName;
         public final String doorIdentifier;
+        public final DoorSnapshot snapshot; // null until the door has been seen
+        public final List<String> groupMembers; // empty unless bound to a door group
         
         public DoorInfo(String doorName, String doorIdentifier) {
+            this(doorName, doorIdentifier, null);
+        }
+
+        public DoorInfo(String doorName, String doorIdentifier, DoorSnapshot snapshot) {
+            this(doorName, doorIdentifier, snapshot, Collections.emptyList());
+        }
+
+        public DoorInfo(String doorName, String doorIdentifier, DoorSnapshot snapshot,
+                        List<String> groupMembers) {
             this.doorName = doorName;
             this.doorIdentifier = doorIdentifier;
+            this.snapshot = snapshot;
+            this.groupMembers = groupMembers;
+        }
+
+        public boolean isGroup() {
+            return groupMembers.size() > 1;
+        }
+    }
+
+    /**
+     * Widget configuration picked for the Quick Settings tile
+     */
+    public static class TileBinding {
+        public final int widgetId;
+        public final DoorInfo doorInfo;
+
+        public TileBinding(int widgetId, DoorInfo doorInfo) {
+            this.widgetId = widgetId;
+            this.doorInfo = doorInfo;
+        }
+    }
+
+    /**
+     * Last-seen advertisement of a door - lets the open path connect without scanning
+     * Same fields as DoorSnapshot in Dart (door_snapshot_service.dart)
+     */
+    public static class DoorSnapshot {
+        public final String address;
+        public final int rssi;
+        public final long seenAtMillis;
+        public final byte[] payload; // raw manufacturer data
+
+        public DoorSnapshot(String address, int rssi, long seenAtMillis, byte[] payload) {
+            this.address = address;
+            this.rssi = rssi;
+            this.seenAtMillis = seenAtMillis;
+            this.payload = payload;
+        }
+
+        /**
+         * MethodChannel form - payload travels as byte[] (Uint8List in Dart)
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("address", address);
+            map.put("rssi", rssi);
+            map.put("seenAt", seenAtMillis);
+            map.put("payload", payload);
+            return map;
+        }
+
+        /**
+         * Parse the snapshot map returned by Dart openDoor, null if missing or malformed
+         */
+        public static DoorSnapshot fromMap(Object value) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) value;
+            Object address = map.get("address");
+            Object rssi = map.get("rssi");
+            Object seenAt = map.get("seenAt");
+            Object payload = map.get("payload");
+            if (!(address instanceof String) || !(rssi instanceof Number)
+                || !(seenAt instanceof Number) || !(payload instanceof byte[])) {
+                return null;
+            }
+            return new DoorSnapshot((String) address, ((Number) rssi).intValue(),
+                ((Number) seenAt).longValue(), (byte[]) payload);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("address", address);
+            json.put("rssi", rssi);
+            json.put("seenAt", seenAtMillis);
+            json.put("payload", Base64.encodeToString(payload, Base64.NO_WRAP));
+            return json;
+        }
+
+        static DoorSnapshot fromJson(JSONObject json) {
+            if (json == null) {
+                return null;
+            }
+            try {
+                return new DoorSnapshot(
+                    json.getString("address"),
+                    json.getInt("rssi"),
+                    json.getLong("seenAt"),
+                    Base64.decode(json.getString("payload"), Base64.NO_WRAP)
+                );
+            } catch (JSONException | IllegalArgumentException e) {
+                WidgetLog.e(TAG, e, "DoorSnapshot: parse error");
+                return null;
+            }
         }
     }
 }
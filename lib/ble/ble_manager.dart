@@ -6,6 +6,7 @@ import 'dart:convert';
 import 'package:convert/convert.dart';
 import 'package:crypto/crypto.dart' as crypto;
 import '../ui/scanner/managers/message_sender.dart';
+import '../ui/scanner/managers/device_filter.dart';
 import '../globals.dart';
 import 'package:intl/intl.dart';
 import 'package:permission_handler/permission_handler.dart';
@@ -22,6 +23,12 @@ class BleManager {
   // Public stream - UI dinleyicileri için
   Stream<List<DiscoveredDevice>> get devicesStream => _deviceController.stream;
 
+  // Her Politeknik reklam paketi (tekrarlar dahil) - ScanAggregator girdisi
+  final StreamController<DiscoveredDevice> _advertisementController =
+      StreamController<DiscoveredDevice>.broadcast();
+  Stream<DiscoveredDevice> get advertisementStream =>
+      _advertisementController.stream;
+
   // İç veri yapıları
   final Map<String, DiscoveredDevice> _devicesMap = {}; // Hızlı erişim için Map
   StreamSubscription<DiscoveredDevice>? _scanSubscription;
@@ -104,6 +111,10 @@ class BleManager {
 
           if ( device.manufacturerData.isNotEmpty )
           {
+            if (_advertisementController.hasListener &&
+                DeviceFilter.hasRawData5054(device)) {
+              _advertisementController.add(device);
+            }
             final devicesList = _devicesMap.values.toList();
             final int itemCount= devicesList.length;
             int i;
@@ -137,24 +148,7 @@ class BleManager {
                   if (device.manufacturerData[4] == 80 &&
                       device.manufacturerData[5] == 84) {
 
-                    Uint8List bytes = device.manufacturerData.sublist(6, 14);
-                    Uint8List dnamel = device.manufacturerData.sublist(14);
-                    String rn = String.fromCharCodes(bytes);
-                    String dname = String.fromCharCodes(dnamel);
-                    debugPrint('BLE: POLITEKNIK DEVICE FOUND DName=${dname},rn=${rn}');
-                    String md5seed = sprintf('Poli%steknik', [rn]);
-                    var md5 = crypto.md5;
-                    var content = new Utf8Encoder().convert(md5seed);
-                    var digest = md5.convert(content);
-//                    String md5s1 = hex.encode(digest.bytes);
-                    String md5s = md5.convert(utf8.encode(md5seed)).toString();
-//                    String md5bytes = sprintf('%02X.%02X.%02X',
-//                        [digest.bytes[0], digest.bytes[1], digest.bytes[2]]);
-                    debugPrint('MD5 : ${md5s}');
-//                 List<int> newMD5=[];
-                    newMD5.clear();
-                    newMD5.addAll(digest.bytes);
-//                 newMD5=digest.bytes;
+                    updateSessionKey(device.manufacturerData);
                   }
 
                   String sentence1 = sprintf(
@@ -217,6 +211,28 @@ class BleManager {
     }
   }
 
+  /// ✅ Reklam verisinden oturum MD5'ini (newMD5) hesapla
+  /// md5("Poli" + rn + "teknik"), rn = index 6-13 arasi 8 byte sifre
+  /// Taramasiz dogrudan baglantida son gorulme kaydindan da cagrilir
+  static void updateSessionKey(Uint8List manufacturerData) {
+    if (manufacturerData.length < 14) return;
+    Uint8List bytes = manufacturerData.sublist(6, 14);
+    Uint8List dnamel = manufacturerData.sublist(14);
+    String rn = String.fromCharCodes(bytes);
+    String dname = String.fromCharCodes(dnamel);
+    debugPrint('BLE: POLITEKNIK DEVICE FOUND DName=${dname},rn=${rn}');
+    String md5seed = sprintf('Poli%steknik', [rn]);
+    var md5 = crypto.md5;
+    var content = new Utf8Encoder().convert(md5seed);
+    var digest = md5.convert(content);
+    String md5s = md5.convert(utf8.encode(md5seed)).toString();
+    debugPrint('MD5 : ${md5s}');
+    if (listEquals(newMD5, digest.bytes)) return; // Ayni oturum
+    newMD5.clear();
+    newMD5.addAll(digest.bytes);
+    sessionGeneration++;
+  }
+
   /// ✅ BLE taramayı durdur
   Future<void> stopScan() async {
     if (!_isScanning) {
@@ -317,6 +333,7 @@ class BleManager {
     debugPrint('BLE: BleManager dispose ediliyor...');
     await stopScan();
     await _deviceController.close();
+    await _advertisementController.close();
     _devicesMap.clear();
   }
 }
@@ -21,9 +21,21 @@ class BleService {
   // discoverAllServices() maliyetli çağrısını sonraki bağlantılarda atlar
   final Map<String, ({QualifiedCharacteristic? write, QualifiedCharacteristic? read})>
       _characteristicCache = {};
+
+  // Son bağlantı/yazma hatası — GattRetryPolicy gecici hata tespiti için okur
+  String? _lastError;
+  String? get lastError => _lastError;
   
 
-  Future<bool> connectToDevice(String deviceId) async {
+  /// [attempts]: dahili deneme sayısı (GattRetryPolicy kullanan yol 1 verir)
+  /// [attemptTimeout]: deneme başına zaman aşımı
+  Future<bool> connectToDevice(
+    String deviceId, {
+    int attempts = 2,
+    Duration attemptTimeout = const Duration(seconds: 5),
+  }) async {
+    _lastError = null;
+
     Future<bool> attemptConnect({required Duration timeout}) async {
       // Önce varsa önceki bağlantıyı iptal et
       await _connectionSubscription?.cancel();
@@ -42,8 +54,17 @@ class BleService {
               !completer.isCompleted) {
             completer.complete(true);
           }
+          // Android GATT hatası (örn. status 133) disconnected + failure olarak
+          // gelir — zaman aşımını beklemeden hemen başarısız say
+          if (update.connectionState == DeviceConnectionState.disconnected &&
+              update.failure != null &&
+              !completer.isCompleted) {
+            _lastError = update.failure!.message;
+            completer.complete(false);
+          }
         },
         onError: (error) {
+          _lastError = error.toString();
           _connectionState = DeviceConnectionState.disconnected;
           if (!_connectionController.isClosed) {
             _connectionController.add(_connectionState);
@@ -55,23 +76,44 @@ class BleService {
       );
 
       try {
-        return await completer.future.timeout(timeout, onTimeout: () => false);
-      } catch (_) {
+        return await completer.future.timeout(timeout, onTimeout: () {
+          _lastError ??= 'connect timeout';
+          return false;
+        });
+      } catch (e) {
+        _lastError ??= e.toString();
         return false;
       }
     }
 
     // İlk deneme (max 5s — ama cihaz bağlanır bağlanmaz tamamlanır)
-    bool connected = await attemptConnect(timeout: const Duration(seconds: 5));
+    bool connected = await attemptConnect(timeout: attemptTimeout);
     if (connected) return true;
 
-    // Bağlantıyı kes ve tekrar dene
-    await disconnect();
-    await Future.delayed(const Duration(milliseconds: 500));
+    for (int i = 1; i < attempts; i++) {
+      // Bağlantıyı kes ve tekrar dene
+      await disconnect();
+      await Future.delayed(const Duration(milliseconds: 500));
+
+      _lastError = null;
+      connected = await attemptConnect(timeout: attemptTimeout);
+      if (connected) return true;
+    }
+    return false;
+  }
 
-    // İkinci deneme
-    connected = await attemptConnect(timeout: const Duration(seconds: 5));
-    return connected;
+  /// GATT önbelleğini yenile (status 133 / yazma hatası sonrası)
+  /// Hem kendi characteristic cache'imizi hem Android GATT cache'ini temizler
+  /// Android önbelleği sadece kurulu bağlantıda temizlenir — bağlıyken,
+  /// discoverServices'ten önce çağır (ConnectionManager refreshGattCache)
+  Future<void> refreshGattCache(String deviceId) async {
+    _characteristicCache.remove(deviceId);
+    try {
+      await _ble.clearGattCache(deviceId);
+      print('GATT cache temizlendi: $deviceId');
+    } catch (e) {
+      print('GATT cache temizleme hatası: $e');
+    }
   }
 
   Future<void> discoverServices(String deviceId) async {
@@ -201,10 +243,12 @@ class BleService {
   }
 
   /// Binary mesaj gönder - Direkt byte array olarak gönder
-  Future<void> sendBinaryMessage(List<int> binaryData) async {
+  /// @return true ise yazma onaylandı
+  Future<bool> sendBinaryMessage(List<int> binaryData) async {
     if (_writeCharacteristic == null) {
       print('Write characteristic bulunamadı!');
-      return;
+      _lastError = 'write characteristic missing';
+      return false;
     }
 
     try {
@@ -229,7 +273,8 @@ class BleService {
 //      }
       
       // Direkt byte array'i gönder (HEX string'e ÇEVİRME!)
-      final data = Uint8List.fromList(binaryData);
+      // DoorFrameEncoder zaten Uint8List doner - tekrar kopyalama
+      final data = binaryData is Uint8List ? binaryData : Uint8List.fromList(binaryData);
 //      print('4. GÖNDERİLEN (Direkt byte array): ${data.length} byte');
 //      print('   ${data.map((b) => '0x${b.toRadixString(16).padLeft(2, '0')}').join(' ')}');
       
@@ -240,12 +285,15 @@ class BleService {
       if (!_messageController.isClosed) {
         _messageController.add('Mesaj gönderildi: ${data.length} byte');
       }
+      return true;
     } catch (e) {
       print('✗ Mesaj gönderme hatası: $e');
       print('========================\n');
+      _lastError = 'write failed: $e';
       if (!_messageController.isClosed) {
         _messageController.add('Gönderme Hatası: $e');
       }
+      return false;
     }
   }
 
@@ -0,0 +1,56 @@
+import 'dart:typed_data';
+
+/// ESP32 giris/cikis/konfigurasyon frame encoder'i
+/// Komut + kart oturum basina bir kez yazilir, her gonderimde sadece
+/// flag byte'i ve 8 byte sifre yamalanir
+/// Format: [komut 16] + [kart 16/32] + [flag 0x00/0x01] + [sifre 8] = 41/57 byte
+class DoorFrameEncoder {
+  static const int flagEntry = 0x00;
+  static const int flagExit = 0x01;
+  static const int passwordLength = 8;
+
+  final Uint8List _commandPrefix;
+  final Uint8List _cardBytes;
+  final Uint8List _frame;
+  Uint8List? _configFrame;
+
+  DoorFrameEncoder(List<int> commandPrefix, List<int> cardBytes)
+      : _commandPrefix = Uint8List.fromList(commandPrefix),
+        _cardBytes = Uint8List.fromList(cardBytes),
+        _frame = Uint8List(
+            commandPrefix.length + cardBytes.length + 1 + passwordLength) {
+    _frame.setAll(0, _commandPrefix);
+    _frame.setAll(_commandPrefix.length, _cardBytes);
+  }
+
+  int get _flagOffset => _commandPrefix.length + _cardBytes.length;
+
+  /// Giris frame'i (flag 0x00)
+  /// Donen liste bir sonraki encode cagrisinda yeniden yazilir
+  Uint8List encodeEntry(List<int> password) => _encode(flagEntry, password);
+
+  /// Cikis frame'i (flag 0x01)
+  /// Donen liste bir sonraki encode cagrisinda yeniden yazilir
+  Uint8List encodeExit(List<int> password) => _encode(flagExit, password);
+
+  /// Konfigurasyon frame'i: [komut 16] + [configCommand 16]
+  Uint8List encodeConfig(List<int> configCommand) {
+    return _configFrame ??= (Uint8List(_commandPrefix.length + configCommand.length)
+      ..setAll(0, _commandPrefix)
+      ..setAll(_commandPrefix.length, configCommand));
+  }
+
+  Uint8List _encode(int flag, List<int> password) {
+    // extractPassword kisa raw data'da bos liste doner - ayni davranis korunur
+    if (password.length > passwordLength) {
+      throw ArgumentError('Sifre $passwordLength byte\'tan uzun olamaz');
+    }
+    final flagOffset = _flagOffset;
+    _frame[flagOffset] = flag;
+    _frame.setAll(flagOffset + 1, password);
+    final length = flagOffset + 1 + password.length;
+    return length == _frame.length
+        ? _frame
+        : Uint8List.sublistView(_frame, 0, length);
+  }
+}
@@ -0,0 +1,83 @@
+import 'dart:math';
+
+/// Gecici GATT hatalari icin hizli tekrar politikasi
+/// Android'in bilinen gecici durumlarini (133 GATT_ERROR, 8/147 timeout,
+/// 62 kurulamadi, 22/19 baglanti koptu, 257 GATT_FAILURE) tanir ve toplam
+/// sure butcesi icinde jitter'li kisa bekleme ile tekrar denemeye izin verir
+/// Varsayilan butce 8s: 5s tarama + 8s < widget tarafindaki 15s zaman asimi
+class GattRetryPolicy {
+  static const Set<int> transientStatuses = {8, 19, 22, 34, 62, 133, 147, 257};
+  static const Set<int> cacheRefreshStatuses = {133, 257};
+  static const Duration defaultBudget = Duration(seconds: 8);
+
+  static final RegExp _statusPattern =
+      RegExp(r'status[\s:=]*(\d+)', caseSensitive: false);
+
+  final int maxAttempts;
+  final Duration budget;
+  final Duration attemptTimeout;
+  final Duration baseBackoff;
+  final Duration maxJitter;
+  final Random _random;
+
+  GattRetryPolicy({
+    this.maxAttempts = 3,
+    this.budget = defaultBudget,
+    this.attemptTimeout = const Duration(seconds: 5),
+    this.baseBackoff = const Duration(milliseconds: 100),
+    this.maxJitter = const Duration(milliseconds: 150),
+    Random? random,
+  }) : _random = random ?? Random();
+
+  /// Hata mesajindan Android GATT durum kodunu cikar (yoksa null)
+  static int? parseStatus(String? error) {
+    if (error == null) return null;
+    final match = _statusPattern.firstMatch(error);
+    if (match != null) return int.tryParse(match.group(1)!);
+    if (error.contains('GATT_ERROR')) return 133;
+    return null;
+  }
+
+  /// Tekrar denemeye deger mi (timeout / yazma hatasi / gecici GATT durumu)
+  static bool isTransient(String? error) {
+    // Sebebi bilinmeyen basarisizlik (orn. BleService'e hic ulasilmadi) tekrar edilmez
+    if (error == null) return false;
+    final lower = error.toLowerCase();
+    if (lower.contains('timeout') || lower.contains('write')) return true;
+    final status = parseStatus(error);
+    return status != null && transientStatuses.contains(status);
+  }
+
+  /// GATT cache yenilenmeli mi (bozuk servis tablosu belirtileri)
+  static bool needsCacheRefresh(String? error) {
+    if (error == null) return false;
+    if (error.toLowerCase().contains('write')) return true;
+    final status = parseStatus(error);
+    return status != null && cacheRefreshStatuses.contains(status);
+  }
+
+  /// Bu denemeden sonra tekrar yapilabilir mi
+  bool canRetry(int attempt, Duration elapsed, String? error) {
+    if (attempt >= maxAttempts) return false;
+    if (!isTransient(error)) return false;
+    // Bekleme + en az kisa bir baglanti denemesi icin sure kalmali
+    return elapsed + backoffCeiling(attempt) + const Duration(seconds: 1) < budget;
+  }
+
+  /// Kalan butceye gore bu denemenin zaman asimi
+  Duration timeoutFor(Duration elapsed) {
+    final remaining = budget - elapsed;
+    if (remaining <= Duration.zero) return Duration.zero;
+    return remaining < attemptTimeout ? remaining : attemptTimeout;
+  }
+
+  /// Ustel bekleme + jitter: 100ms, 200ms, 400ms ... + [0, maxJitter)
+  Duration backoff(int attempt) {
+    final exponential = baseBackoff * (1 << (attempt - 1));
+    final jitterMs = _random.nextInt(maxJitter.inMilliseconds + 1);
+    return exponential + Duration(milliseconds: jitterMs);
+  }
+
+  Duration backoffCeiling(int attempt) =>
+      baseBackoff * (1 << (attempt - 1)) + maxJitter;
+}
@@ -0,0 +1,93 @@
+import 'dart:async';
+import 'package:flutter/foundation.dart';
+import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
+import 'ble_service.dart';
+import '../ui/scanner/managers/connection_manager.dart';
+import '../ui/scanner/managers/message_sender.dart';
+
+/// Grup uyesine tek baglanti kulvari
+/// Her kulvarin kendi BleService'i var: baglanti aboneligi ve yazma
+/// karakteristigi kulvarlar arasinda karismaz
+class HedgeLane {
+  final DiscoveredDevice device;
+
+  /// RSSI sirasi (0 = en guclu)
+  final int rank;
+
+  final BleService bleService = BleService();
+  final Map<String, bool> _deviceConnections = {};
+  late final ConnectionManager connectionManager;
+  late final MessageSender messageSender;
+
+  /// Baglanti + servis kesfi suresi (hazir olana kadar)
+  int? readyMs;
+  bool _closed = false;
+
+  HedgeLane(this.device, this.rank) {
+    connectionManager = ConnectionManager(
+      bleService: bleService,
+      deviceConnections: _deviceConnections,
+    );
+    messageSender = MessageSender(bleService: bleService);
+  }
+
+  Future<bool> _connect(Duration timeout) async {
+    final watch = Stopwatch()..start();
+    try {
+      final ready = await connectionManager
+          .connectToDevice(device.id, attempts: 1, attemptTimeout: timeout)
+          .timeout(timeout + const Duration(seconds: 2));
+      if (ready) readyMs = watch.elapsedMilliseconds;
+      return ready && !_closed;
+    } catch (e) {
+      debugPrint('HedgedConnector: ${device.id} connect error - $e');
+      return false;
+    }
+  }
+
+  /// Baglantiyi kes ve kaynaklari birak (birden cok kez cagrilabilir)
+  Future<void> close() async {
+    if (_closed) return;
+    _closed = true;
+    await connectionManager.disconnectFromDevice(device.id);
+    bleService.dispose();
+  }
+}
+
+/// Grup uyelerine paralel baglanti (hedged connect)
+/// Adaylarin hepsine ayni anda baglanmaya baslar, servis kesfi ilk biten
+/// kulvar kazanir, digerleri hemen kapatilir (gec baglanan da kapatilir)
+class HedgedConnector {
+  final Duration attemptTimeout;
+
+  HedgedConnector({this.attemptTimeout = const Duration(seconds: 5)});
+
+  /// Adaylar RSSI sirasinda verilir; hicbiri hazir olmazsa null
+  /// Kazanan kulvarin kapatilmasi cagirana aittir
+  Future<HedgeLane?> connectFirst(List<DiscoveredDevice> candidates) async {
+    final lanes = [
+      for (int i = 0; i < candidates.length; i++) HedgeLane(candidates[i], i)
+    ];
+    final winner = Completer<HedgeLane?>();
+    int pending = lanes.length;
+
+    for (final lane in lanes) {
+      unawaited(lane._connect(attemptTimeout).then((ready) async {
+        pending--;
+        if (ready && !winner.isCompleted) {
+          debugPrint(
+              'HedgedConnector: winner ${lane.device.id} (rank ${lane.rank}, ${lane.readyMs}ms)');
+          winner.complete(lane);
+          for (final other in lanes) {
+            if (other != lane) unawaited(other.close());
+          }
+          return;
+        }
+        await lane.close();
+        if (pending == 0 && !winner.isCompleted) winner.complete(null);
+      }));
+    }
+    if (lanes.isEmpty) return null;
+    return winner.future;
+  }
+}
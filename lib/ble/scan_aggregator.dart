@@ -0,0 +1,142 @@
+import 'dart:async';
+import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
+
+/// Tek bir yayin periyodunda biriken gorunur degisiklikler
+/// added: yeni gorunen cihazlar, removed: kaybolan cihaz ID'leri,
+/// rssiChanged: RSSI kovasi degisen cihazlar (son reklam paketiyle)
+class ScanDelta {
+  final List<DiscoveredDevice> added;
+  final List<String> removed;
+  final List<DiscoveredDevice> rssiChanged;
+
+  const ScanDelta({
+    required this.added,
+    required this.removed,
+    required this.rssiChanged,
+  });
+
+  bool get isEmpty => added.isEmpty && removed.isEmpty && rssiChanged.isEmpty;
+}
+
+/// Cihaz basina durum tutan, hiz sinirli tarama birlestiricisi
+/// Her reklam paketini sessizce isler, UI'a sabit aralikla (10 Hz) sadece
+/// gorunur degisiklikleri (ekleme/cikarma/RSSI kovasi) delta olarak yollar
+class ScanAggregator {
+  static const Duration defaultInterval = Duration(milliseconds: 100);
+  static const Duration defaultStaleAfter = Duration(seconds: 10);
+  static const int rssiBucketSize = 10;
+
+  final Duration interval;
+  final Duration staleAfter;
+
+  final Map<String, _DeviceState> _states = {};
+  final Set<String> _pendingAdded = {};
+  final Set<String> _pendingRssi = {};
+  final StreamController<ScanDelta> _deltaController =
+      StreamController<ScanDelta>.broadcast();
+  StreamSubscription<DiscoveredDevice>? _sourceSub;
+  Timer? _ticker;
+  DateTime? _lastAdvertisement;
+
+  ScanAggregator(
+    Stream<DiscoveredDevice> source, {
+    this.interval = defaultInterval,
+    this.staleAfter = defaultStaleAfter,
+  }) {
+    _sourceSub = source.listen(_onAdvertisement);
+  }
+
+  /// Birlestirilmis delta akisi - bos delta yayinlanmaz
+  Stream<ScanDelta> get deltas => _deltaController.stream;
+
+  /// UI'da gorunen cihazlar (ilk gorulme sirasina gore, son yayinlanan haliyle)
+  List<DiscoveredDevice> get devices => [
+        for (final state in _states.values)
+          if (state.visible) state.emitted
+      ];
+
+  /// Cihazin en son reklam paketi (UI'a yansimamis olsa bile)
+  DiscoveredDevice? deviceById(String deviceId) => _states[deviceId]?.latest;
+
+  static int rssiBucket(int rssi) => (rssi / rssiBucketSize).floor();
+
+  void _onAdvertisement(DiscoveredDevice device) {
+    final now = DateTime.now();
+    _lastAdvertisement = now;
+    final state = _states[device.id];
+    if (state == null) {
+      _states[device.id] = _DeviceState(device, now);
+      _pendingAdded.add(device.id);
+    } else {
+      state.latest = device;
+      state.lastSeen = now;
+      if (state.visible &&
+          rssiBucket(device.rssi) != rssiBucket(state.emitted.rssi)) {
+        _pendingRssi.add(device.id);
+      }
+    }
+    _ticker ??= Timer.periodic(interval, (_) => _flush());
+  }
+
+  void _flush() {
+    final added = <DiscoveredDevice>[];
+    final removed = <String>[];
+    final rssiChanged = <DiscoveredDevice>[];
+
+    // Kaybolan cihazlar - en son reklama gore olculur, tarama durunca
+    // (baglanti sirasinda) liste bosalmaz
+    final reference = _lastAdvertisement ?? DateTime.now();
+    _states.removeWhere((id, state) {
+      if (reference.difference(state.lastSeen) < staleAfter) return false;
+      if (state.visible) removed.add(id);
+      _pendingAdded.remove(id);
+      _pendingRssi.remove(id);
+      return true;
+    });
+
+    for (final id in _pendingAdded) {
+      final state = _states[id]!;
+      state.emitted = state.latest;
+      state.visible = true;
+      added.add(state.latest);
+    }
+    for (final id in _pendingRssi) {
+      final state = _states[id]!;
+      state.emitted = state.latest;
+      rssiChanged.add(state.latest);
+    }
+    _pendingAdded.clear();
+    _pendingRssi.clear();
+
+    final delta =
+        ScanDelta(added: added, removed: removed, rssiChanged: rssiChanged);
+    if (!delta.isEmpty && !_deltaController.isClosed) {
+      _deltaController.add(delta);
+    }
+
+    // Degisiklik yoksa zamanlayiciyi durdur - sonraki reklam yeniden baslatir
+    if (delta.isEmpty) {
+      _ticker?.cancel();
+      _ticker = null;
+    }
+  }
+
+  Future<void> dispose() async {
+    _ticker?.cancel();
+    _ticker = null;
+    await _sourceSub?.cancel();
+    await _deltaController.close();
+    _states.clear();
+  }
+}
+
+class _DeviceState {
+  DiscoveredDevice latest;
+  DiscoveredDevice emitted;
+  DateTime lastSeen;
+  bool visible = false;
+
+  _DeviceState(DiscoveredDevice device, this.lastSeen)
+      : latest = device,
+        emitted = device;
+}
@@ -0,0 +1,322 @@
+import 'dart:convert';
+import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
+import 'package:shared_preferences/shared_preferences.dart';
+
+/// Arka plan tarama seviyesi
+/// idle: kapi yok, seyrek lowPower; balanced: favori gorundu;
+/// active: favorinin sinyali yukseliyor (yaklasiyor) - kesintisiz lowLatency
+enum ScanDutyLevel { idle, balanced, active }
+
+/// Bu tick icin tarama karari
+/// window == null: kesintisiz tarama (bir sonraki tick'e kadar acik kalir)
+class ScanDecision {
+  final ScanMode mode;
+  final Duration? window;
+
+  const ScanDecision(this.mode, this.window);
+
+  bool get continuous => window == null;
+}
+
+class _LevelPolicy {
+  final ScanMode mode;
+  final int everyTicks;
+  final Duration? window;
+
+  const _LevelPolicy(this.mode, this.everyTicks, this.window);
+}
+
+/// Uyarlanabilir tarama gorev dongusu (duty cycle) zamanlayicisi
+/// Foreground task her [tick]'te onTick cagirir; zamanlayici bu tick'te
+/// hangi modda ve ne kadar taranacagina karar verir
+/// Yukselme: favori gorulunce balanced, RSSI egilimi yukseliyorsa active
+/// Egilim: son [_RssiTrend.window] olcumun ortalamasi uzun ortalamanin
+/// risingDb ustunde, ust uste [_RssiTrend.confirmations] olcumde - tek
+/// reklamdaki gurultu (+-4-6 dB) active'i yeniden kurmaz, sabit duran
+/// kullanicida kisa ve uzun ortalama birlesir ve activeHold sonunda dusulur
+/// Geri cekilme: activeHold boyunca sicak gorulme yoksa balanced,
+/// quietPeriod boyunca favori yoksa idle
+/// Android 30 sn'de 5'ten fazla tarama baslatmaya izin vermez: active
+/// kesintisiz tarar, diger seviyeler en fazla 2 baslatma / 30 sn
+class ScanDutyScheduler {
+  static const Duration tick = Duration(seconds: 5);
+
+  static const Map<ScanDutyLevel, _LevelPolicy> _policies = {
+    ScanDutyLevel.idle: _LevelPolicy(ScanMode.lowPower, 6, Duration(seconds: 3)),
+    ScanDutyLevel.balanced:
+        _LevelPolicy(ScanMode.balanced, 3, Duration(seconds: 5)),
+    ScanDutyLevel.active: _LevelPolicy(ScanMode.lowLatency, 1, null),
+  };
+
+  final Duration activeHold;
+  final Duration quietPeriod;
+  final int risingDb;
+  final ScanDutyStats stats;
+
+  ScanDutyLevel _level = ScanDutyLevel.idle;
+  int _ticksSinceStart = 1 << 30; // ilk tick'te hemen tara
+  DateTime? _lastFavoriteAt;
+  DateTime? _lastHotAt;
+  final Map<String, _RssiTrend> _trends = {};
+
+  // Acik tarama penceresi
+  ScanMode? _scanMode;
+  DateTime? _scanStartedAt;
+  DateTime? _radioCheckpoint;
+  DateTime? _previousScanEnd;
+  Duration _gapBeforeScan = Duration.zero;
+  final Set<String> _seenThisScan = {};
+
+  ScanDutyScheduler({
+    ScanDutyStats? stats,
+    this.activeHold = const Duration(seconds: 20),
+    this.quietPeriod = const Duration(seconds: 60),
+    this.risingDb = 4,
+  }) : stats = stats ?? ScanDutyStats();
+
+  ScanDutyLevel get level => _level;
+
+  /// Her tick'te cagrilir: seviye geri cekilmesi + tarama karari
+  /// null: bu tick'te tarama yok
+  ScanDecision? onTick(DateTime now) {
+    _backOff(now);
+    _accountRadio(now);
+    stats.elapsedMs += tick.inMilliseconds;
+
+    final policy = _policies[_level]!;
+    _ticksSinceStart++;
+    if (policy.window == null) {
+      return ScanDecision(policy.mode, null);
+    }
+    if (_ticksSinceStart < policy.everyTicks) return null;
+    return ScanDecision(policy.mode, policy.window);
+  }
+
+  /// Seviye yukselince hemen uygulanacak karar (tick sayilmaz)
+  ScanDecision currentDecision() {
+    final policy = _policies[_level]!;
+    return ScanDecision(policy.mode, policy.window);
+  }
+
+  /// Tarama basladi
+  void onScanStart(ScanMode mode, DateTime now) {
+    _scanMode = mode;
+    _scanStartedAt = now;
+    _radioCheckpoint = now;
+    _ticksSinceStart = 0;
+    _seenThisScan.clear();
+    final previousEnd = _previousScanEnd;
+    _gapBeforeScan =
+        previousEnd == null ? Duration.zero : now.difference(previousEnd);
+    stats.add(stats.windows, mode.name, 1);
+  }
+
+  /// Tarama durdu
+  void onScanStop(DateTime now) {
+    if (_scanMode == null) return;
+    _accountRadio(now);
+    _scanMode = null;
+    _scanStartedAt = null;
+    _radioCheckpoint = null;
+    _previousScanEnd = now;
+  }
+
+  /// Favori kapi gorulmesi
+  /// @return true ise seviye yukseldi - cagiran taramayi hemen yeniden planlamali
+  bool onFavoriteSighting(String deviceId, int rssi, DateTime now) {
+    final lastSeen = _trends[deviceId]?.lastSeen;
+    final arrived = lastSeen == null || now.difference(lastSeen) > quietPeriod;
+
+    // Algilama gecikmesi: sadece yeni gelen kapi icin, pencere basina bir kez
+    // ust sinir = pencere oncesi taranmayan bosluk + pencere icindeki sure
+    final scanStart = _scanStartedAt;
+    if (scanStart != null && _seenThisScan.add(deviceId)) {
+      final offset = now.difference(scanStart);
+      stats.recordOffset(offset.inMilliseconds);
+      if (arrived) {
+        stats.recordDetection((_gapBeforeScan + offset).inMilliseconds);
+      }
+    }
+
+    final trend = _trends.putIfAbsent(deviceId, () => _RssiTrend());
+    final rising = trend.add(rssi, now, quietPeriod, risingDb);
+
+    final previous = _level;
+    _lastFavoriteAt = now;
+    if (rising) {
+      _lastHotAt = now;
+      _level = ScanDutyLevel.active;
+    } else if (_level == ScanDutyLevel.idle) {
+      _level = ScanDutyLevel.balanced;
+    }
+    if (_level != previous) stats.add(stats.levelChanges, _level.name, 1);
+    return _level.index > previous.index;
+  }
+
+  void _backOff(DateTime now) {
+    final previous = _level;
+    final hot = _lastHotAt;
+    if (_level == ScanDutyLevel.active &&
+        (hot == null || now.difference(hot) > activeHold)) {
+      _level = ScanDutyLevel.balanced;
+    }
+    final favorite = _lastFavoriteAt;
+    if (_level == ScanDutyLevel.balanced &&
+        (favorite == null || now.difference(favorite) > quietPeriod)) {
+      _level = ScanDutyLevel.idle;
+    }
+    if (_level != previous) stats.add(stats.levelChanges, _level.name, 1);
+  }
+
+  void _accountRadio(DateTime now) {
+    final mode = _scanMode;
+    final checkpoint = _radioCheckpoint;
+    if (mode == null || checkpoint == null) return;
+    stats.add(stats.radioMs, mode.name, now.difference(checkpoint).inMilliseconds);
+    _radioCheckpoint = now;
+  }
+}
+
+/// Cihaz basina RSSI egilimi: kisa pencere ortalamasi ile uzun ustel
+/// ortalamanin farki; yukselme ust uste birkac olcumde gorulmeli
+class _RssiTrend {
+  /// Kisa pencere (son olcumler)
+  static const int window = 5;
+
+  /// Yukselmenin kabulu icin ust uste yukselen olcum sayisi
+  static const int confirmations = 3;
+
+  /// Uzun ortalama: yavas, gurultuyu yutar
+  static const double _alpha = 0.1;
+
+  final List<int> _recent = [];
+  double? _average;
+  int _risingStreak = 0;
+  DateTime? lastSeen;
+
+  /// Olcumu ekle; egilim [risingDb] ile yukseliyorsa true
+  bool add(int rssi, DateTime now, Duration resetAfter, int risingDb) {
+    final last = lastSeen;
+    if (last != null && now.difference(last) > resetAfter) {
+      _average = null;
+      _recent.clear();
+      _risingStreak = 0;
+    }
+    lastSeen = now;
+
+    _recent.add(rssi);
+    if (_recent.length > window) _recent.removeAt(0);
+
+    final average = _average;
+    if (average == null) {
+      _average = rssi.toDouble();
+      return false;
+    }
+    _average = average + _alpha * (rssi - average);
+
+    if (_recent.length < window) return false;
+    final shortMean = _recent.reduce((a, b) => a + b) / _recent.length;
+    _risingStreak = shortMean - average >= risingDb ? _risingStreak + 1 : 0;
+    return _risingStreak >= confirmations;
+  }
+}
+
+/// Tarama olcumleri: mod basina radyo acik suresi, pencere sayisi,
+/// algilama gecikmesi - politika ayari icin
+/// Sadece arka plan isolate'i yazar; okurken prefs yeniden yuklenir
+class ScanDutyStats {
+  static const _statsKey = 'scan_duty_stats';
+
+  final Map<String, int> radioMs;
+  final Map<String, int> windows;
+  final Map<String, int> levelChanges;
+  int elapsedMs;
+  int detections;
+  int detectTotalMs;
+  int detectMaxMs;
+  int offsetCount;
+  int offsetTotalMs;
+
+  ScanDutyStats({
+    Map<String, int>? radioMs,
+    Map<String, int>? windows,
+    Map<String, int>? levelChanges,
+    this.elapsedMs = 0,
+    this.detections = 0,
+    this.detectTotalMs = 0,
+    this.detectMaxMs = 0,
+    this.offsetCount = 0,
+    this.offsetTotalMs = 0,
+  })  : radioMs = radioMs ?? {},
+        windows = windows ?? {},
+        levelChanges = levelChanges ?? {};
+
+  int get totalRadioMs => radioMs.values.fold(0, (sum, ms) => sum + ms);
+
+  /// Radyonun acik kaldigi zaman orani (0-1)
+  double get dutyCycle => elapsedMs == 0 ? 0 : totalRadioMs / elapsedMs;
+
+  /// Yeni gelen kapi icin ortalama algilama gecikmesi (ust sinir)
+  int get averageDetectMs => detections == 0 ? 0 : detectTotalMs ~/ detections;
+
+  void add(Map<String, int> counter, String key, int by) {
+    counter[key] = (counter[key] ?? 0) + by;
+  }
+
+  void recordDetection(int ms) {
+    detections++;
+    detectTotalMs += ms;
+    if (ms > detectMaxMs) detectMaxMs = ms;
+  }
+
+  void recordOffset(int ms) {
+    offsetCount++;
+    offsetTotalMs += ms;
+  }
+
+  Map<String, dynamic> toJson() => {
+        'radioMs': radioMs,
+        'windows': windows,
+        'levelChanges': levelChanges,
+        'elapsedMs': elapsedMs,
+        'detections': detections,
+        'detectTotalMs': detectTotalMs,
+        'detectMaxMs': detectMaxMs,
+        'offsetCount': offsetCount,
+        'offsetTotalMs': offsetTotalMs,
+      };
+
+  factory ScanDutyStats.fromJson(Map<String, dynamic> json) => ScanDutyStats(
+        radioMs: Map<String, int>.from(json['radioMs'] as Map? ?? {}),
+        windows: Map<String, int>.from(json['windows'] as Map? ?? {}),
+        levelChanges: Map<String, int>.from(json['levelChanges'] as Map? ?? {}),
+        elapsedMs: json['elapsedMs'] as int? ?? 0,
+        detections: json['detections'] as int? ?? 0,
+        detectTotalMs: json['detectTotalMs'] as int? ?? 0,
+        detectMaxMs: json['detectMaxMs'] as int? ?? 0,
+        offsetCount: json['offsetCount'] as int? ?? 0,
+        offsetTotalMs: json['offsetTotalMs'] as int? ?? 0,
+      );
+
+  static Future<ScanDutyStats> load() async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.reload(); // Arka plan isolate'inin yazdiklari
+    final jsonStr = prefs.getString(_statsKey);
+    if (jsonStr == null || jsonStr.isEmpty) return ScanDutyStats();
+    try {
+      return ScanDutyStats.fromJson(Map<String, dynamic>.from(jsonDecode(jsonStr)));
+    } catch (_) {
+      return ScanDutyStats();
+    }
+  }
+
+  Future<void> save() async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.setString(_statsKey, jsonEncode(toJson()));
+  }
+
+  static Future<void> clear() async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.remove(_statsKey);
+  }
+}
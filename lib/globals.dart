@@ -3,4 +3,6 @@ library globals;
 //int counter = 0;
 String deviceName = "PFD6000";
 List<int> newMD5 = [];
+// newMD5 veya kayitli kart degisince artar - MessageSender encoder'ini yeniler
+int sessionGeneration = 0;
 bool isConnected = false;
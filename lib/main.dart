@@ -34,9 +34,22 @@ void main() async {
     BackgroundScanService.initForegroundTask();
   }
 
+  // Widget icin sicak motor servisi (otomatik acma + ayar aciksa)
+  await WidgetChannelService().syncKeepWarmEngine();
+  // Arka plan taramasinin kayit tuttugu widget kapilari
+  await WidgetChannelService().syncBoundDoors();
+
   runApp(const MyApp());
 }
 
+/// Keep-warm engine entrypoint (EngineWarmService)
+/// Sadece widget openDoor handler'ini kaydeder, UI calistirmaz
+@pragma('vm:entry-point')
+void widgetEngineMain() async {
+  WidgetsFlutterBinding.ensureInitialized();
+  await WidgetChannelService().notifyHandlerReady();
+}
+
 class MyApp extends StatefulWidget {
   const MyApp({super.key});
 
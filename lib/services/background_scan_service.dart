@@ -6,7 +6,9 @@ import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
 import 'settings_service.dart';
 import 'favorites_service.dart';
 import 'notification_service.dart';
+import 'door_snapshot_service.dart';
 import '../ble/ble_manager.dart';
+import '../ble/scan_duty_scheduler.dart';
 import '../ui/scanner/managers/device_filter.dart';
 
 /// Arka plan BLE tarama servisi
@@ -31,7 +33,9 @@ class BackgroundScanService {
         playSound: false,
       ),
       foregroundTaskOptions: ForegroundTaskOptions(
-        eventAction: ForegroundTaskEventAction.repeat(15000),
+        // Tarama penceresi ve modu ScanDutyScheduler'a gore her tick'te secilir
+        eventAction: ForegroundTaskEventAction.repeat(
+            ScanDutyScheduler.tick.inMilliseconds),
         autoRunOnBoot: false,
         autoRunOnMyPackageReplaced: false,
         allowWakeLock: true,
@@ -83,30 +87,109 @@ class BackgroundScanTaskHandler extends TaskHandler {
   final FlutterReactiveBle _ble = FlutterReactiveBle();
   StreamSubscription<DiscoveredDevice>? _scanSub;
   final Map<String, DateTime> _notifiedDevices = {};
+  final Map<String, DateTime> _snapshotSaved = {};
+  ScanDutyScheduler _scheduler = ScanDutyScheduler();
+  ScanMode? _scanMode;
+  Timer? _windowTimer;
+  int _scanGeneration = 0;
+  Set<String> _favoriteIds = {};
+
+  // Son gorulme kaydi tutulan kapilar: favoriler + widget/kutucuga bagli kapilar
+  Set<String> _snapshotIds = {};
+
+  // Tarama baslat/durdur islemleri tek sirada calisir: tick, tarama
+  // dinleyicisindeki seviye yukselmesi ve pencere zamanlayicisi ayni anda
+  // _scanSub atayip birbirinin aboneligini sizdirmasin
+  Future<void> _scanOp = Future.value();
+  int _ticks = 0;
+
+  // Olcumler bu kadar tick'te bir kaydedilir (~30 sn)
+  static const int _statsFlushTicks = 6;
+
+  // Ayni cihaz icin son gorulme kaydi en fazla bu siklikta yazilir
+  // DoorSnapshot.maxAge'den kisa olmali, yoksa kayit hic taze kalmaz
+  static const Duration _snapshotInterval = Duration(seconds: 2);
 
   @override
   Future<void> onStart(DateTime timestamp, TaskStarter starter) async {
     debugPrint('BackgroundScanTask: Baslatildi');
+    // Olcumler calistirmalar arasinda birikir
+    _scheduler = ScanDutyScheduler(stats: await ScanDutyStats.load());
   }
 
   @override
   void onRepeatEvent(DateTime timestamp) {
-    _doScan();
+    _onTick();
   }
 
-  Future<void> _doScan() async {
-    debugPrint('BackgroundScanTask: Tarama basladi');
-    await _scanSub?.cancel();
-
-    final favoriteIds = await FavoritesService.getFavoriteIds();
-    if (favoriteIds.isEmpty) {
+  Future<void> _onTick() async {
+    _favoriteIds = (await FavoritesService.getFavoriteIds()).toSet();
+    if (_favoriteIds.isEmpty) {
       debugPrint('BackgroundScanTask: Favori kapi yok, tarama atlanıyor');
+      await _serialized(_stopScan);
       return;
     }
+    _snapshotIds = {
+      ..._favoriteIds,
+      ...await DoorSnapshotService.loadBoundDoors(),
+    };
+
+    await _serialized(() => _apply(_scheduler.onTick(DateTime.now())));
+
+    if (++_ticks % _statsFlushTicks == 0) {
+      final stats = _scheduler.stats;
+      debugPrint('BackgroundScanTask: seviye=${_scheduler.level.name} '
+          'radyo=%${(stats.dutyCycle * 100).toStringAsFixed(1)} '
+          'algilama ort=${stats.averageDetectMs}ms max=${stats.detectMaxMs}ms');
+      await stats.save();
+    }
+  }
+
+  /// Islemi onceki tarama islemleri bittikten sonra calistir
+  Future<void> _serialized(Future<void> Function() op) {
+    final next = _scanOp.then((_) => op());
+    _scanOp = next.catchError((e) {
+      debugPrint('BackgroundScanTask: Tarama islemi hatasi - $e');
+    });
+    return next;
+  }
+
+  /// Karari uygula: kesintisiz taramada ayni mod acik kalir,
+  /// pencereli taramada sure dolunca durdurulur
+  /// Sadece _serialized icinden cagrilir
+  Future<void> _apply(ScanDecision? decision) async {
+    if (decision == null) {
+      // Pencere zamanlayicisi durdurur; kesintisiz tarama seviye dusunce biter
+      if (_windowTimer == null) await _stopScan();
+      return;
+    }
+    if (decision.continuous && _scanMode == decision.mode && _windowTimer == null) {
+      return; // Zaten kesintisiz taraniyor
+    }
+    await _startScan(decision.mode);
+    final window = decision.window;
+    if (window != null) {
+      final generation = _scanGeneration;
+      _windowTimer = Timer(window, () {
+        _windowTimer = null;
+        // Bu arada yeni tarama basladiysa ona dokunma
+        _serialized(() async {
+          if (generation == _scanGeneration) await _stopScan();
+        });
+      });
+    }
+  }
+
+  Future<void> _startScan(ScanMode mode) async {
+    await _stopScan();
+    debugPrint('BackgroundScanTask: Tarama basladi (${mode.name})');
+    _scanGeneration++;
+    _scanMode = mode;
+    _scheduler.onScanStart(mode, DateTime.now());
 
     _scanSub = _ble.scanForDevices(
       withServices: [],
-      scanMode: ScanMode.lowLatency,
+      scanMode: mode,
     ).listen((device) {
       // Politeknik cihaz filtresi
       if (device.manufacturerData.length >= 6 &&
@@ -115,19 +198,44 @@ class BackgroundScanTaskHandler extends TaskHandler {
           device.manufacturerData[4] == 0x50 &&
           device.manufacturerData[5] == 0x54) {
 
-        if (favoriteIds.contains(device.id)) {
+        _saveSnapshot(device);
+
+        if (_favoriteIds.contains(device.id)) {
+          final steppedUp = _scheduler.onFavoriteSighting(
+              device.id, device.rssi, DateTime.now());
+          if (steppedUp) {
+            // Yaklasiyor - sonraki tick'i beklemeden hizli moda gec
+            debugPrint('BackgroundScanTask: Seviye -> ${_scheduler.level.name}');
+            _serialized(() => _apply(_scheduler.currentDecision()));
+          }
           _onFavoriteDoorFound(device);
         }
       }
     });
+  }
 
-    // 5 saniye tara, sonra durdur
-    await Future.delayed(const Duration(seconds: 5));
+  Future<void> _stopScan() async {
+    _windowTimer?.cancel();
+    _windowTimer = null;
+    if (_scanMode == null) return;
+    _scanMode = null;
+    _scheduler.onScanStop(DateTime.now());
     await _scanSub?.cancel();
     _scanSub = null;
     debugPrint('BackgroundScanTask: Tarama bitti');
   }
 
+  /// Son gorulme kaydi - widget/bildirim acmasi taze ise taramasiz baglanir
+  /// Sadece favori ve widget'a bagli kapilar - digerleri hic acilmaz
+  void _saveSnapshot(DiscoveredDevice device) {
+    if (!_snapshotIds.contains(device.id)) return;
+    final now = DateTime.now();
+    final last = _snapshotSaved[device.id];
+    if (last != null && now.difference(last) < _snapshotInterval) return;
+    _snapshotSaved[device.id] = now;
+    DoorSnapshotService.save(DoorSnapshot.fromDevice(device, seenAt: now));
+  }
+
   void _onFavoriteDoorFound(DiscoveredDevice device) {
     // Ayni cihaz icin 60sn icerisinde tekrar bildirim gonderme
     final lastNotified = _notifiedDevices[device.id];
@@ -156,6 +264,7 @@ class BackgroundScanTaskHandler extends TaskHandler {
   @override
   Future<void> onDestroy(DateTime timestamp) async {
     debugPrint('BackgroundScanTask: Yok edildi');
-    await _scanSub?.cancel();
+    await _serialized(_stopScan);
+    await _scheduler.stats.save();
   }
 }
@@ -0,0 +1,165 @@
+import 'dart:convert';
+import 'dart:typed_data';
+import 'package:flutter/foundation.dart';
+import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
+import 'package:shared_preferences/shared_preferences.dart';
+
+/// Kapinin son gorulme kaydi: adres, RSSI, reklamin gorulme zamani, ham veri
+/// Taze ise kapi acma taramasiz dogrudan adrese baglanir
+/// Widget tarafinda WidgetStorageManager.DoorSnapshot ile ayni alanlar
+class DoorSnapshot {
+  /// Bu yastan eski kayit ile dogrudan baglanilmaz
+  /// Cerceve sifresi ve oturum MD5'i reklamdaki 8 baytlik rastgeleden gelir;
+  /// kapi (ESP32) bunu degistirince eski kayitla yazilan cerceve reddedilir ama
+  /// yazma onayi basari sayilir ve taramaya dusulmez. Firmware'in degistirme
+  /// suresi belgelenene kadar kisa tutulur
+  static const Duration maxAge = Duration(seconds: 5);
+
+  final String address;
+  final int rssi;
+  final DateTime seenAt;
+  final Uint8List payload;
+
+  DoorSnapshot({
+    required this.address,
+    required this.rssi,
+    required this.seenAt,
+    required this.payload,
+  });
+
+  factory DoorSnapshot.fromDevice(DiscoveredDevice device, {DateTime? seenAt}) {
+    return DoorSnapshot(
+      address: device.id,
+      rssi: device.rssi,
+      seenAt: seenAt ?? DateTime.now(),
+      payload: Uint8List.fromList(device.manufacturerData),
+    );
+  }
+
+  /// Platform kanalindan gelen harita (payload byte[] -> Uint8List)
+  static DoorSnapshot? fromMap(Map<dynamic, dynamic>? map) {
+    if (map == null) return null;
+    try {
+      final payload = map['payload'];
+      return DoorSnapshot(
+        address: map['address'] as String,
+        rssi: map['rssi'] as int,
+        seenAt: DateTime.fromMillisecondsSinceEpoch(map['seenAt'] as int),
+        payload: payload is Uint8List
+            ? payload
+            : Uint8List.fromList(List<int>.from(payload as List)),
+      );
+    } catch (e) {
+      debugPrint('DoorSnapshot: parse error - $e');
+      return null;
+    }
+  }
+
+  Map<String, dynamic> toMap() => {
+        'address': address,
+        'rssi': rssi,
+        'seenAt': seenAt.millisecondsSinceEpoch,
+        'payload': payload,
+      };
+
+  Map<String, dynamic> toJson() => {
+        'address': address,
+        'rssi': rssi,
+        'seenAt': seenAt.millisecondsSinceEpoch,
+        'payload': base64Encode(payload),
+      };
+
+  factory DoorSnapshot.fromJson(Map<String, dynamic> json) => DoorSnapshot(
+        address: json['address'] as String,
+        rssi: json['rssi'] as int,
+        seenAt: DateTime.fromMillisecondsSinceEpoch(json['seenAt'] as int),
+        payload: base64Decode(json['payload'] as String),
+      );
+
+  Duration get age => DateTime.now().difference(seenAt);
+
+  bool get isFresh => age < maxAge && !age.isNegative;
+
+  /// Tarama sonucu yerine gecen cihaz - MessageSender sifreyi payload'dan okur
+  DiscoveredDevice toDevice() => DiscoveredDevice(
+        id: address,
+        name: '',
+        serviceData: const {},
+        manufacturerData: payload,
+        rssi: rssi,
+        serviceUuids: const [],
+      );
+
+  /// Iki kayittan daha yenisini sec
+  static DoorSnapshot? newest(DoorSnapshot? a, DoorSnapshot? b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    return b.seenAt.isAfter(a.seenAt) ? b : a;
+  }
+}
+
+/// Arka plan tarama gorulmeleri + basarili acmalardan gelen son gorulme kayitlari
+/// Arka plan taramasi ayri isolate'te calisir; okurken prefs yeniden yuklenir
+class DoorSnapshotService {
+  static const _keyPrefix = 'door_snapshot_';
+  static const _boundDoorsKey = 'widget_bound_doors';
+
+  /// Kaydi yaz (ayni adres icin eskisinin uzerine)
+  /// Suresi dolmus diger kayitlar da silinir - bunlarla zaten baglanilmaz
+  static Future<void> save(DoorSnapshot snapshot) async {
+    final prefs = await SharedPreferences.getInstance();
+    // Diger isolate'in yazdigi taze kayit eski onbellekle silinmesin
+    await prefs.reload();
+    final key = '$_keyPrefix${snapshot.address}';
+    await prefs.setString(key, jsonEncode(snapshot.toJson()));
+    await _pruneExpired(prefs, keep: key);
+  }
+
+  static Future<void> _pruneExpired(SharedPreferences prefs,
+      {required String keep}) async {
+    final expired = <String>[];
+    for (final key in prefs.getKeys()) {
+      if (key == keep || !key.startsWith(_keyPrefix)) continue;
+      final jsonStr = prefs.getString(key);
+      if (jsonStr == null) continue;
+      try {
+        final snapshot = DoorSnapshot.fromJson(
+            Map<String, dynamic>.from(jsonDecode(jsonStr)));
+        if (snapshot.age >= DoorSnapshot.maxAge) expired.add(key);
+      } catch (_) {
+        expired.add(key); // Bozuk kayit
+      }
+    }
+    for (final key in expired) {
+      await prefs.remove(key);
+    }
+  }
+
+  /// Widget/kutucuga bagli kapi adresleri (grup uyeleri dahil)
+  /// Arka plan taramasi bu kapilarin kaydini tutar; baglamalar yerel tarafta,
+  /// arka plan isolate'i kanala erisemedigi icin listeyi ana uygulama yazar
+  static Future<void> saveBoundDoors(Iterable<String> addresses) async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.setStringList(_boundDoorsKey, addresses.toSet().toList());
+  }
+
+  static Future<Set<String>> loadBoundDoors() async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.reload(); // Ana uygulamanin yazdiklari
+    return (prefs.getStringList(_boundDoorsKey) ?? const []).toSet();
+  }
+
+  /// Kapinin son kaydini al (yoksa null)
+  static Future<DoorSnapshot?> load(String address) async {
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.reload(); // Arka plan isolate'inin yazdiklari
+    final jsonStr = prefs.getString('$_keyPrefix$address');
+    if (jsonStr == null || jsonStr.isEmpty) return null;
+    try {
+      return DoorSnapshot.fromJson(Map<String, dynamic>.from(jsonDecode(jsonStr)));
+    } catch (e) {
+      debugPrint('DoorSnapshotService: bozuk kayit $address - $e');
+      return null;
+    }
+  }
+}
@@ -1,13 +1,18 @@
 import 'dart:async';
+import 'dart:math';
 import 'package:permission_handler/permission_handler.dart';
 import 'package:flutter/foundation.dart';
 import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
 import '../ble/ble_manager.dart';
 import '../ble/ble_service.dart';
+import '../ble/gatt_retry_policy.dart';
+import '../ble/hedged_connector.dart';
 import '../ui/scanner/managers/connection_manager.dart';
 import '../ui/scanner/managers/message_sender.dart';
 import '../ui/scanner/managers/card_manager.dart';
 import '../ui/scanner/managers/device_filter.dart';
+import 'door_snapshot_service.dart';
+import 'open_metrics_service.dart';
 
 /// Result codes for gate entry operations
 enum EntryResultReason {
@@ -28,12 +33,28 @@ class EntryResult {
   final EntryResultReason reason;
   final String message;
 
+  /// Baglan + gonder deneme sayisi (1 = tekrar yapilmadi)
+  final int attempts;
+
+  /// Basarili acmada kullanilan son gorulme kaydi (widget deposuna yazilir)
+  final DoorSnapshot? snapshot;
+
   const EntryResult({
     required this.success,
     required this.reason,
     required this.message,
+    this.attempts = 1,
+    this.snapshot,
   });
 
+  EntryResult copyWith({int? attempts, DoorSnapshot? snapshot}) => EntryResult(
+        success: success,
+        reason: reason,
+        message: message,
+        attempts: attempts ?? this.attempts,
+        snapshot: snapshot ?? this.snapshot,
+      );
+
   factory EntryResult.success() => const EntryResult(
         success: true,
         reason: EntryResultReason.success,
@@ -93,7 +114,15 @@ class EntryResult {
 /// Uses the same BLE code path: ConnectionManager + MessageSender
 class GateEntryService {
   static const int _scanTimeoutSeconds = 5;
-  static const int _connectTimeoutSeconds = 5;
+  static const Duration _directConnectTimeout = Duration(milliseconds: 2500);
+
+  /// Kapi grubunda ayni anda baglanilan en guclu uye sayisi
+  /// Eszamanli baglanti denemeleri ayni radyoyu paylasir; 2 yeterli yedeklik
+  static const int _hedgeWidth = 2;
+  static const Duration _groupConnectTimeout = Duration(seconds: 5);
+
+  /// Cihaz basina baglanti + servis kesfi suresi (OpenMetricsService haritasi)
+  static const String _readyMetric = 'connect.ready.ms';
 
   final BleManager _bleManager = BleManager();
   final BleService _bleService = BleService();
@@ -115,7 +144,14 @@ class GateEntryService {
 
   /// Attempt to open a door by its identifier (device ID)
   /// This is the SAME code path as the main "Giriş Yap" button
-  Future<EntryResult> enterGate(String doorIdentifier) async {
+  /// [snapshot]: widget deposundaki son gorulme kaydi - taze ise tarama atlanir
+  /// [groupMembers]: kapi grubu (birden fazla uye) - paralel baglanti yolu
+  /// [canRequestPermissions]: false ise (aktivitesiz motor) izin istenmez,
+  /// sadece durumu okunur - permission_handler request() aktivite ister
+  Future<EntryResult> enterGate(String doorIdentifier,
+      {DoorSnapshot? snapshot,
+      List<String> groupMembers = const [],
+      bool canRequestPermissions = true}) async {
     debugPrint('');
     debugPrint('╔═══════════════════════════════════════════════════════════╗');
     debugPrint(
@@ -137,11 +173,22 @@ class GateEntryService {
     if (defaultTargetPlatform == TargetPlatform.android) {
       // Request/Check permissions loosely - allow if restricted/limited but try our best
       // Android 12+ (S+)
-      final scanStatus = await Permission.bluetoothScan.request();
-      final connectStatus = await Permission.bluetoothConnect.request();
+      Future<PermissionStatus> check(Permission permission) async {
+        try {
+          return canRequestPermissions
+              ? await permission.request()
+              : await permission.status;
+        } catch (e) {
+          debugPrint('GateEntryService: WARN - Permission check failed: $e');
+          return PermissionStatus.denied;
+        }
+      }
+
+      final scanStatus = await check(Permission.bluetoothScan);
+      final connectStatus = await check(Permission.bluetoothConnect);
 
       // Location (Pre-12 or if needed)
-      final locationStatus = await Permission.location.request();
+      final locationStatus = await check(Permission.location);
 
       debugPrint(
           'GateEntryService: Perms - Scan:$scanStatus, Connect:$connectStatus, Loc:$locationStatus');
@@ -185,11 +232,42 @@ class GateEntryService {
     }
     debugPrint('GateEntryService: Card bytes OK (${cardBytes.length} bytes)');
 
+    if (groupMembers.length > 1) {
+      return _enterGroup(doorIdentifier, groupMembers, cardBytes, snapshot);
+    }
+
+    // Step 2a: Son gorulme kaydi taze ise taramasiz dogrudan adrese baglan
+    // Baglanti olmazsa (kapi uzaklasti / adres degisti) normal taramaya dus
+    final directTimer = Stopwatch()..start();
+    final known = DoorSnapshot.newest(
+        snapshot, await DoorSnapshotService.load(doorIdentifier));
+    if (known != null && known.address == doorIdentifier && known.isFresh) {
+      debugPrint(
+          'GateEntryService: Step 2a - Direct connect (snapshot ${known.age.inMilliseconds}ms old, RSSI ${known.rssi})');
+      BleManager.updateSessionKey(known.payload);
+      final direct = await _connectAndSend(
+          known.toDevice(), cardBytes, _directConnectTimeout);
+      if (direct.success) {
+        await _cleanup();
+        unawaited(OpenMetricsService.increment('snapshot.direct.success'));
+        return direct.copyWith(snapshot: known);
+      }
+      debugPrint(
+          'GateEntryService: Direct connect failed (${_bleService.lastError}) - scanning');
+      unawaited(OpenMetricsService.increment('snapshot.direct.fallback'));
+    } else {
+      // Olcum taramayi geciktirmesin (her artis tum blob'u yeniden yazar)
+      unawaited(OpenMetricsService.increment(
+          known == null ? 'snapshot.missing' : 'snapshot.stale'));
+    }
+    directTimer.stop();
+
     // Step 2: Scan for the device
     debugPrint(
         'GateEntryService: Step 2 - Scanning for device (${_scanTimeoutSeconds}s)');
 
     DiscoveredDevice? targetDevice;
+    DateTime? targetSeenAt;
     bool deviceFound = false;
 
     // Start scanning
@@ -206,6 +284,7 @@ class GateEntryService {
           if (device.id == doorIdentifier) {
             debugPrint('GateEntryService: ★ TARGET FOUND ★');
             targetDevice = device;
+            targetSeenAt ??= DateTime.now();
             deviceFound = true;
           }
         }
@@ -244,20 +323,201 @@ class GateEntryService {
     debugPrint(
         'GateEntryService: Device confirmed: ${targetDevice!.name} (${targetDevice!.id})');
 
-    // Step 3: Connect to device (includes discoverServices!)
+    // Step 3+4: Connect + send
+    // Gecici GATT hatalarinda (133, timeout, yazma hatasi) ayni reklam verisiyle
+    // hizli tekrar — yeniden tarama yok, toplam sure GattRetryPolicy.budget
+    // Basarisiz dogrudan baglanti denemesinin suresi butceden dusulur
+    final policy = GattRetryPolicy(
+        budget: GattRetryPolicy.defaultBudget - directTimer.elapsed);
+    final budget = Stopwatch()..start();
+    int attempt = 0;
+    bool refreshCache = false;
+
+    while (true) {
+      attempt++;
+      final timeout = policy.timeoutFor(budget.elapsed);
+      debugPrint(
+          'GateEntryService: Step 3 - Connecting (attempt $attempt, ${timeout.inMilliseconds}ms timeout)');
+
+      final result = await _connectAndSend(targetDevice!, cardBytes, timeout,
+          refreshGattCache: refreshCache);
+      // Dis zaman asimi BleService'e ulasmaz - sebebi sonuctan al
+      final error = _bleService.lastError ??
+          (result.reason == EntryResultReason.timeout ? 'connect timeout' : null);
+
+      if (result.success ||
+          !policy.canRetry(attempt, budget.elapsed, error)) {
+        await _cleanup();
+        // Beklenmez - sonuc widget'a hemen donsun
+        unawaited(OpenMetricsService.recordRetry(
+          attempts: attempt,
+          elapsedMs: budget.elapsedMilliseconds,
+          success: result.success,
+        ));
+        if (!result.success) return result.copyWith(attempts: attempt);
+
+        final seen = DoorSnapshot.fromDevice(targetDevice!,
+            seenAt: targetSeenAt ?? DateTime.now());
+        await DoorSnapshotService.save(seen);
+        return result.copyWith(attempts: attempt, snapshot: seen);
+      }
+
+      debugPrint('GateEntryService: Transient failure ($error) - retrying');
+      // Onbellek bir sonraki denemede, baglanti kurulunca kesiften once temizlenir
+      refreshCache = refreshCache || GattRetryPolicy.needsCacheRefresh(error);
+      await Future.delayed(policy.backoff(attempt));
+    }
+  }
+
+  /// Kapi grubu: en guclu [_hedgeWidth] uyeye paralel baglan, ilk hazir
+  /// olana yaz, digerlerini kapat
+  /// Taze gorulme kayitlari yetmezse uyeler gorulene kadar (en fazla 5s) taranir
+  /// Olcum: kazanan uye + sirasi, tek hedef yoluna gore kazanilan sure
+  Future<EntryResult> _enterGroup(String primary, List<String> members,
+      List<int> cardBytes, DoorSnapshot? snapshot) async {
     debugPrint(
-        'GateEntryService: Step 3 - Connecting (${_connectTimeoutSeconds}s timeout)');
+        'GateEntryService: Group entry - ${members.length} members, primary $primary');
+
+    // Step 2a: Taze kayitlar (widget'tan gelen + arka plan taramasinin yazdiklari)
+    final seen = <String, DoorSnapshot>{};
+    for (final member in members) {
+      var known = await DoorSnapshotService.load(member);
+      if (snapshot != null && snapshot.address == member) {
+        known = DoorSnapshot.newest(snapshot, known);
+      }
+      if (known != null && known.isFresh) seen[member] = known;
+    }
+
+    // Step 2: Yeterli uye yoksa tara - tarama verisi kayitlarin yerine gecer
+    final wanted = min(_hedgeWidth, members.length);
+    if (seen.length < wanted) {
+      debugPrint(
+          'GateEntryService: Step 2 - Scanning for group (${seen.length}/$wanted known)');
+      _bleManager.startScan();
+      _deviceSubscription = _bleManager.devicesStream.listen((devices) {
+        for (final device in devices) {
+          if (members.contains(device.id) &&
+              DeviceFilter.hasRawData5054(device)) {
+            seen[device.id] = DoorSnapshot.fromDevice(device);
+          }
+        }
+      });
+      for (int i = 0; i < _scanTimeoutSeconds * 2; i++) {
+        await Future.delayed(const Duration(milliseconds: 500));
+        if (seen.length >= wanted) {
+          debugPrint(
+              'GateEntryService: $wanted members seen after ${(i + 1) * 500}ms');
+          break;
+        }
+      }
+      await _deviceSubscription?.cancel();
+      await _bleManager.stopScan();
+      _deviceSubscription = null;
+    }
+
+    if (seen.isEmpty) {
+      debugPrint('GateEntryService: ERROR - No group member found');
+      await _cleanup();
+      return EntryResult.notFound();
+    }
+
+    final candidates = seen.values.toList()
+      ..sort((a, b) => b.rssi.compareTo(a.rssi));
+    candidates.removeRange(min(wanted, candidates.length), candidates.length);
+    if (!candidates.any((c) => c.address == primary)) {
+      unawaited(OpenMetricsService.increment('hedge.primaryMissing'));
+    }
+    debugPrint('GateEntryService: Step 3 - Hedged connect to '
+        '${candidates.map((c) => '${c.address} (${c.rssi})').join(', ')}');
+
+    // Step 3: Paralel baglan, ilk hazir olan kazanir
+    final lane = await HedgedConnector(attemptTimeout: _groupConnectTimeout)
+        .connectFirst([for (final c in candidates) c.toDevice()]);
+    if (lane == null) {
+      debugPrint('GateEntryService: ERROR - No group member connected');
+      await _cleanup();
+      unawaited(OpenMetricsService.increment('hedge.connectFail'));
+      return EntryResult.connectFail();
+    }
+
+    // Step 4: Kazanana yaz - oturum anahtari kazananin reklamindan
+    bool sent = false;
     try {
+      await Future.delayed(const Duration(milliseconds: 150));
+      BleManager.updateSessionKey(lane.device.manufacturerData);
+      sent = await lane.messageSender.sendEntryMessage(cardBytes, lane.device);
+    } catch (e) {
+      debugPrint('GateEntryService: ERROR - Group send exception: $e');
+    } finally {
+      await lane.close();
+      await _cleanup();
+    }
+
+    final winner = lane.device.id;
+    final readyMs = lane.readyMs ?? 0;
+    // Beklenmez - widget geri bildirimi olcum yazmalarini beklemesin
+    unawaited(_recordHedgeMetrics(primary, winner, lane.rank, readyMs));
+
+    if (!sent) {
+      debugPrint('GateEntryService: ERROR - Group sendEntryMessage failed');
+      return EntryResult.writeFail();
+    }
+    debugPrint(
+        'GateEntryService: ★ GROUP SUCCESS ★ $winner (rank ${lane.rank}, ${readyMs}ms)');
+    final used = seen[winner]!;
+    await DoorSnapshotService.save(used);
+    return EntryResult.success().copyWith(snapshot: used);
+  }
+
+  /// Grup acmasi olcumleri: kazanan sirasi, uye hazir olma suresi, kazanc
+  /// Kazanc = tek hedef yoluna gore kazanilan sure
+  /// Tek hedef yolu birincil uyeye baglanirdi: kazanc = birincilin gecmis
+  /// ortalama hazir olma suresi - kazananin suresi (birincil kazandiysa 0)
+  /// Negatif deger paralel baglantinin maliyetini gosterir
+  Future<void> _recordHedgeMetrics(
+      String primary, String winner, int rank, int readyMs) async {
+    await OpenMetricsService.increment('hedge.win.rank.$rank');
+    await OpenMetricsService.recordDeviceDuration(
+        _readyMetric, winner, readyMs);
+    if (winner == primary) {
+      await OpenMetricsService.recordDuration('hedge.savedMs', 0);
+      return;
+    }
+    final primaryMs =
+        await OpenMetricsService.averageDeviceDuration(_readyMetric, primary);
+    if (primaryMs == null) {
+      await OpenMetricsService.increment('hedge.savedMs.unknown');
+      return;
+    }
+    await OpenMetricsService.recordDuration('hedge.savedMs', primaryMs - readyMs);
+  }
+
+  /// Tek baglan + gonder denemesi
+  /// Basarisizlikta sebep BleService.lastError'da kalir
+  /// [refreshGattCache]: baglandiktan sonra servis kesfinden once GATT onbellegini temizle
+  Future<EntryResult> _connectAndSend(
+      DiscoveredDevice targetDevice, List<int> cardBytes, Duration timeout,
+      {bool refreshGattCache = false}) async {
+    try {
+      final connectWatch = Stopwatch()..start();
       final connected = await _connectionManager
-          .connectToDevice(targetDevice!.id)
-          .timeout(Duration(seconds: _connectTimeoutSeconds));
+          .connectToDevice(
+            targetDevice.id,
+            attempts: 1,
+            attemptTimeout: timeout,
+            refreshGattCache: refreshGattCache,
+          )
+          .timeout(timeout + const Duration(seconds: 2));
 
       if (!connected) {
         debugPrint('GateEntryService: ERROR - Connection failed');
-        await _cleanup();
         return EntryResult.connectFail();
       }
       debugPrint('GateEntryService: Connection SUCCESSFUL');
+      // Grup yolunun kazanc hesabi icin uye basina hazir olma suresi
+      // (beklenmez - yazma yolunu geciktirmesin)
+      unawaited(OpenMetricsService.recordDeviceDuration(
+          _readyMetric, targetDevice.id, connectWatch.elapsedMilliseconds));
 
       // Small delay for connection stabilization (same as scanner_page)
       await Future.delayed(const Duration(milliseconds: 150));
@@ -265,7 +525,9 @@ class GateEntryService {
       // Step 4: Send entry message
       debugPrint('GateEntryService: Step 4 - Sending entry message');
       final sendSuccess =
-          await _messageSender.sendEntryMessage(cardBytes, targetDevice!);
+          await _messageSender.sendEntryMessage(cardBytes, targetDevice);
+
+      await _connectionManager.disconnectFromDevice(targetDevice.id);
 
       if (sendSuccess) {
         debugPrint('');
@@ -276,22 +538,17 @@ class GateEntryService {
         debugPrint(
             '╚═══════════════════════════════════════════════════════════╝');
         debugPrint('');
-        await _connectionManager.disconnectFromDevice(targetDevice!.id);
-        await _cleanup();
         return EntryResult.success();
       } else {
         debugPrint('GateEntryService: ERROR - sendEntryMessage returned false');
-        await _connectionManager.disconnectFromDevice(targetDevice!.id);
-        await _cleanup();
         return EntryResult.writeFail();
       }
     } on TimeoutException {
       debugPrint('GateEntryService: ERROR - Connection timeout');
-      await _cleanup();
+      await _connectionManager.disconnectFromDevice(targetDevice.id);
       return EntryResult.timeout();
     } catch (e) {
       debugPrint('GateEntryService: ERROR - Exception: $e');
-      await _cleanup();
       return EntryResult.error('Hata: $e');
     }
   }
@@ -0,0 +1,119 @@
+import 'dart:convert';
+import 'package:shared_preferences/shared_preferences.dart';
+
+/// Kapi acma yolu olcumleri (tekrar sayilari, sure dagilimi)
+/// Sayaclar SharedPreferences'ta tek bir JSON nesnesi olarak saklanir
+/// Ana, sicak ve headless motorlar ayri isolate'lerdir: her guncelleme prefs'i
+/// yeniden yukleyip okur-yazar, isolate icindeki guncellemeler sirayla calisir
+/// Ornek: 'retry.attempts.2' -> 14, 'retry.ms.attempts.2' -> {count, totalMs, maxMs}
+/// Cihaz basina olcumler tek anahtar altinda, sinirli bir haritada tutulur:
+/// 'connect.ready.ms' -> {MAC: {count, totalMs, maxMs}}
+class OpenMetricsService {
+  static const _metricsKey = 'open_metrics';
+
+  /// Cihaz basina haritada tutulan en fazla cihaz (en eski guncellenen duser)
+  static const int maxDevices = 16;
+
+  // Bu isolate'teki bekleyen guncellemeler (okuma-degistirme-yazma sirasi)
+  static Future<void> _queue = Future.value();
+
+  /// Sayaci artir
+  static Future<void> increment(String name, {int by = 1}) async {
+    await _update((metrics) {
+      metrics[name] = (metrics[name] as int? ?? 0) + by;
+    });
+  }
+
+  /// Sure kaydet (adet, toplam, en buyuk)
+  static Future<void> recordDuration(String name, int ms) async {
+    await _update((metrics) {
+      final entry = Map<String, dynamic>.from(
+          metrics[name] as Map? ?? {'count': 0, 'totalMs': 0, 'maxMs': 0});
+      entry['count'] = (entry['count'] as int) + 1;
+      entry['totalMs'] = (entry['totalMs'] as int) + ms;
+      if (ms > (entry['maxMs'] as int)) entry['maxMs'] = ms;
+      metrics[name] = entry;
+    });
+  }
+
+  /// Cihaz basina sure kaydet - [name] altindaki haritada [device] girdisi
+  static Future<void> recordDeviceDuration(
+      String name, String device, int ms) async {
+    await _update((metrics) {
+      final devices = Map<String, dynamic>.from(metrics[name] as Map? ?? {});
+      // Cikarip tekrar eklemek sirayi son guncellemeye gore tutar
+      final entry = Map<String, dynamic>.from(devices.remove(device) as Map? ??
+          {'count': 0, 'totalMs': 0, 'maxMs': 0});
+      entry['count'] = (entry['count'] as int) + 1;
+      entry['totalMs'] = (entry['totalMs'] as int) + ms;
+      if (ms > (entry['maxMs'] as int)) entry['maxMs'] = ms;
+      devices[device] = entry;
+      while (devices.length > maxDevices) {
+        devices.remove(devices.keys.first);
+      }
+      metrics[name] = devices;
+    });
+  }
+
+  /// Kayitli surelerin ortalamasi (kayit yoksa null)
+  static Future<int?> averageDuration(String name) async {
+    return _average((await getAll())[name] as Map?);
+  }
+
+  /// Cihaz basina kayitli surelerin ortalamasi (kayit yoksa null)
+  static Future<int?> averageDeviceDuration(String name, String device) async {
+    final devices = (await getAll())[name] as Map?;
+    return _average(devices?[device] as Map?);
+  }
+
+  static int? _average(Map? entry) {
+    final count = entry?['count'] as int? ?? 0;
+    if (count == 0) return null;
+    return (entry!['totalMs'] as int) ~/ count;
+  }
+
+  /// Baglan + gonder denemesini kaydet
+  /// attempts: toplam deneme (1 = tekrar yok), elapsedMs: ilk denemeden sonuca
+  static Future<void> recordRetry({
+    required int attempts,
+    required int elapsedMs,
+    required bool success,
+  }) async {
+    await _update((metrics) {
+      final key = 'retry.attempts.$attempts';
+      metrics[key] = (metrics[key] as int? ?? 0) + 1;
+      if (success) {
+        metrics['$key.success'] = (metrics['$key.success'] as int? ?? 0) + 1;
+      }
+    });
+    await recordDuration('retry.ms.attempts.$attempts', elapsedMs);
+  }
+
+  /// Tum olcumleri al (bekleyen guncellemeler bittikten sonra)
+  static Future<Map<String, dynamic>> getAll() async {
+    await _queue;
+    return _read(await SharedPreferences.getInstance());
+  }
+
+  /// Olcumleri sifirla
+  static Future<void> clear() => _update((metrics) => metrics.clear());
+
+  static Future<void> _update(void Function(Map<String, dynamic>) change) {
+    final next = _queue.then((_) async {
+      final prefs = await SharedPreferences.getInstance();
+      final metrics = await _read(prefs);
+      change(metrics);
+      await prefs.setString(_metricsKey, jsonEncode(metrics));
+    });
+    // Hatali guncelleme sonrakileri durdurmasin
+    _queue = next.catchError((_) {});
+    return next;
+  }
+
+  static Future<Map<String, dynamic>> _read(SharedPreferences prefs) async {
+    await prefs.reload(); // Diger motorlarin (isolate) yazdiklari
+    final jsonStr = prefs.getString(_metricsKey);
+    if (jsonStr == null || jsonStr.isEmpty) return {};
+    return Map<String, dynamic>.from(jsonDecode(jsonStr));
+  }
+}
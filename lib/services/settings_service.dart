@@ -14,6 +14,7 @@ class SettingsService {
   static const _notificationSound = 'notification_sound';
   static const _notificationVibrate = 'notification_vibrate';
   static const _quickMode = 'quick_mode';
+  static const _widgetKeepWarm = 'widget_keep_warm';
 
   // Cache
   static bool? _cachedAutoOpen;
@@ -26,6 +27,7 @@ class SettingsService {
   static bool? _cachedNotification;
   static bool? _cachedNotifSound;
   static bool? _cachedNotifVibrate;
+  static bool? _cachedWidgetKeepWarm;
 
   // --- Otomatik Acma ---
 
@@ -94,6 +96,20 @@ class SettingsService {
     await prefs.setBool(_autoOpenEntryOnly, value);
   }
 
+  /// Widget icin Flutter motorunu sicak tut (otomatik acma ile birlikte calisir)
+  static Future<bool> isWidgetKeepWarmEnabled() async {
+    if (_cachedWidgetKeepWarm != null) return _cachedWidgetKeepWarm!;
+    final prefs = await SharedPreferences.getInstance();
+    _cachedWidgetKeepWarm = prefs.getBool(_widgetKeepWarm) ?? false;
+    return _cachedWidgetKeepWarm!;
+  }
+
+  static Future<void> setWidgetKeepWarmEnabled(bool value) async {
+    _cachedWidgetKeepWarm = value;
+    final prefs = await SharedPreferences.getInstance();
+    await prefs.setBool(_widgetKeepWarm, value);
+  }
+
   // --- Arka Plan Tarama ---
 
   static Future<bool> isBackgroundScanEnabled() async {
@@ -177,5 +193,6 @@ class SettingsService {
     await isNotificationSoundEnabled();
     await isNotificationVibrateEnabled();
     await isQuickModeEnabled();
+    await isWidgetKeepWarmEnabled();
   }
 }
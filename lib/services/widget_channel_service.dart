@@ -1,7 +1,9 @@
 import 'dart:async';
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
+import 'door_snapshot_service.dart';
 import 'gate_entry_service.dart';
+import 'settings_service.dart';
 
 /// Service for Flutter <-> Android Widget communication
 /// Handles openDoor, configureDoor, and widget state queries
@@ -59,22 +61,34 @@ class WidgetChannelService {
   }
 
   /// Handle openDoor - uses GateEntryService for actual BLE work
-  /// Returns TRUE only after BLE command is ACTUALLY sent
-  Future<bool> _handleOpenDoor(MethodCall call) async {
+  /// Returns {success, snapshot}: success TRUE only after BLE command is ACTUALLY sent,
+  /// snapshot = son gorulme kaydi (Android widget deposunu gunceller)
+  Future<Map<String, dynamic>> _handleOpenDoor(MethodCall call) async {
     final args = Map<String, dynamic>.from(call.arguments);
     final widgetId = args['widgetId'] as int;
     final doorIdentifier = args['doorIdentifier'] as String;
     final doorName = args['doorName'] as String;
+    final snapshot = DoorSnapshot.fromMap(args['snapshot'] as Map?);
+    // Aktivitesiz motor (keep-warm / headless): izin istenemez, sadece durum okunur
+    final hasActivity = args['hasActivity'] as bool? ?? false;
+    final groupMembers =
+        List<String>.from(args['groupMembers'] as List? ?? const []);
 
     debugPrint('WidgetChannelService: openDoor START');
     debugPrint('  widgetId: $widgetId');
     debugPrint('  doorIdentifier: $doorIdentifier');
     debugPrint('  doorName: $doorName');
+    debugPrint('  groupMembers: ${groupMembers.length}');
+    debugPrint('  snapshot: ${snapshot == null ? 'none' : '${snapshot.age.inSeconds}s old'}');
 
     try {
       // Use GateEntryService for actual BLE work
       final service = GateEntryService();
-      final result = await service.enterGate(doorIdentifier);
+      final result =
+          await service.enterGate(doorIdentifier,
+              snapshot: snapshot,
+              groupMembers: groupMembers,
+              canRequestPermissions: hasActivity);
 
       debugPrint('WidgetChannelService: openDoor RESULT');
       debugPrint('  success: ${result.success}');
@@ -85,10 +99,13 @@ class WidgetChannelService {
       await service.dispose();
 
       // Return actual success status
-      return result.success;
+      return {
+        'success': result.success,
+        'snapshot': result.snapshot?.toMap(),
+      };
     } catch (e) {
       debugPrint('WidgetChannelService: openDoor ERROR: $e');
-      return false;
+      return {'success': false};
     }
   }
 
@@ -116,16 +133,133 @@ class WidgetChannelService {
   }
 
   /// Save door configuration for a widget (called after door picker selection)
-  Future<void> saveDoorConfig(
-      int widgetId, String doorName, String doorIdentifier) async {
+  /// [groupMembers]: kapi grubu uyeleri (doorIdentifier = birincil uye)
+  /// Returns false when Android could not store (or read back) the binding
+  Future<bool> saveDoorConfig(
+      int widgetId, String doorName, String doorIdentifier,
+      {List<String> groupMembers = const []}) async {
     try {
       await _channel.invokeMethod('saveDoorConfig', {
         'widgetId': widgetId,
         'doorName': doorName,
         'doorIdentifier': doorIdentifier,
+        if (groupMembers.isNotEmpty) 'groupMembers': groupMembers,
       });
     } on PlatformException catch (e) {
       debugPrint('Failed to save door config: ${e.message}');
+      return false;
+    }
+    await syncBoundDoors();
+    return true;
+  }
+
+  /// Bagli kapi listesini arka plan taramasi icin yaz (DoorSnapshotService)
+  /// Silinen widget'lar bir sonraki uygulama acilisinda listeden duser
+  Future<void> syncBoundDoors() async {
+    try {
+      final bindings = await _channel.invokeMethod('getWidgetBindings');
+      if (bindings == null) return;
+      final addresses = <String>{};
+      for (final binding in bindings as List) {
+        final map = Map<String, dynamic>.from(binding as Map);
+        final identifier = map['doorIdentifier'] as String?;
+        if (identifier != null && identifier.isNotEmpty) {
+          addresses.add(identifier);
+        }
+        addresses.addAll(List<String>.from(map['groupMembers'] ?? const []));
+      }
+      await DoorSnapshotService.saveBoundDoors(addresses);
+    } on PlatformException catch (e) {
+      debugPrint('Failed to sync bound doors: ${e.message}');
+    } on MissingPluginException {
+      // Headless widget engine - MainActivity handler yok
+      debugPrint('Bound doors: handler not available on this engine');
+    }
+  }
+
+  /// Tell the keep-warm service that this engine's openDoor handler is live
+  /// Called from the widgetEngineMain entrypoint only
+  Future<void> notifyHandlerReady() async {
+    try {
+      await _channel.invokeMethod('widgetHandlerReady');
+    } on PlatformException catch (e) {
+      debugPrint('Failed to notify handler ready: ${e.message}');
+    }
+  }
+
+  /// Start/stop the keep-warm engine service to match settings
+  /// Runs only when both auto-open and widget keep-warm are enabled
+  /// Returns false when Android refused to start it (Bluetooth permission missing)
+  Future<bool> syncKeepWarmEngine() async {
+    final autoOpen = await SettingsService.isAutoOpenEnabled();
+    final keepWarm = await SettingsService.isWidgetKeepWarmEnabled();
+    try {
+      final started = await _channel.invokeMethod('setKeepWarmEngine', {
+        'enabled': autoOpen && keepWarm,
+      });
+      return started != false;
+    } on PlatformException catch (e) {
+      debugPrint('Failed to set keep-warm engine: ${e.message}');
+    } on MissingPluginException {
+      // Headless widget engine - MainActivity handler yok
+      debugPrint('Keep-warm engine: handler not available on this engine');
+    }
+    return false;
+  }
+
+  /// Keep-warm stats: running, engineReady, hits, misses, mainEngine, hitRate, engineMemoryKb
+  /// hits/misses: ana motor yokken hazir motor bulundu mu (mainEngine ayri sayilir)
+  Future<Map<String, dynamic>?> getKeepWarmStats() async {
+    try {
+      final stats = await _channel.invokeMethod('getKeepWarmStats');
+      return stats == null ? null : Map<String, dynamic>.from(stats);
+    } on PlatformException catch (e) {
+      debugPrint('Failed to get keep-warm stats: ${e.message}');
+      return null;
+    }
+  }
+
+  /// Configured widgets: [{widgetId, doorName, doorIdentifier, groupMembers, tile}]
+  /// tile = Hizli Ayar kutucugunun actigi yapilandirma
+  Future<List<Map<String, dynamic>>> getWidgetBindings() async {
+    try {
+      final bindings = await _channel.invokeMethod('getWidgetBindings');
+      if (bindings == null) return [];
+      return [
+        for (final binding in bindings as List)
+          Map<String, dynamic>.from(binding as Map)
+      ];
+    } on PlatformException catch (e) {
+      debugPrint('Failed to get widget bindings: ${e.message}');
+      return [];
+    }
+  }
+
+  /// Hizli Ayar kutucugunun acacagi widget yapilandirmasini sec
+  Future<void> setTileWidget(int widgetId) async {
+    try {
+      await _channel.invokeMethod('setTileWidget', {'widgetId': widgetId});
+    } on PlatformException catch (e) {
+      debugPrint('Failed to set tile widget: ${e.message}');
+    }
+  }
+
+  /// Native olay kayitlari (saha teshisi): [{time, level, tag, thread, message}]
+  /// En eskiden yeniye; release derlemede D seviyesi yoktur
+  Future<List<Map<String, dynamic>>> getNativeLogs() async {
+    try {
+      final logs = await _channel.invokeMethod('getNativeLogs');
+      if (logs == null) return [];
+      return [
+        for (final event in logs as List)
+          Map<String, dynamic>.from(event as Map)
+      ];
+    } on PlatformException catch (e) {
+      debugPrint('Failed to get native logs: ${e.message}');
+      return [];
+    } on MissingPluginException {
+      debugPrint('Native logs: handler not available on this engine');
+      return [];
     }
   }
 
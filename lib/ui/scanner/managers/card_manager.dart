@@ -1,9 +1,13 @@
 import 'package:shared_preferences/shared_preferences.dart';
+import '../../../globals.dart';
 
 /// Kart numarası yönetimi
 /// SharedPreferences ile kart numarasını kaydetme/okuma
 /// Byte ↔ String dönüşüm fonksiyonları
 class CardManager {
+  /// Son okunan/kaydedilen kart - degisince sessionGeneration artar
+  static String? _lastCardString;
+
   /// Kart numarasını SharedPreferences'a kaydet
   /// @param cardBytes Kart numarası byte dizisi (16 veya 32 byte)
   static Future<void> saveCardToConfig(List<int> cardBytes) async {
@@ -11,6 +15,7 @@ class CardManager {
       final prefs = await SharedPreferences.getInstance();
       final cardString = cardBytes.map((b) => b.toRadixString(16).padLeft(2, '0')).join('');
       await prefs.setString('configured_card_number', cardString);
+      _onCardString(cardString);
     } catch (e) {
       print('Kart kaydetme hatası: $e');
     }
@@ -23,6 +28,8 @@ class CardManager {
       final prefs = await SharedPreferences.getInstance();
       final cardString = prefs.getString('configured_card_number');
       if (cardString != null && cardString.isNotEmpty) {
+        // Kart baska motorda (isolate) degismis olabilir
+        _onCardString(cardString);
         return _hexStringToBytes(cardString);
       }
       return [];
@@ -31,6 +38,12 @@ class CardManager {
     }
   }
 
+  static void _onCardString(String cardString) {
+    if (cardString == _lastCardString) return;
+    _lastCardString = cardString;
+    sessionGeneration++;
+  }
+
   /// HEX string'i byte dizisine çevir
   /// @param hexString "A1B2C3" formatında HEX string
   /// @return Byte dizisi
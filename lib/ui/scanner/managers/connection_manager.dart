@@ -21,8 +21,17 @@ class ConnectionManager {
   /// Cihaza bağlan
   /// Zaten bağlıysa true döner, aksi halde bağlantı kurar
   /// @param deviceId Cihaz ID'si
+  /// @param attempts BleService dahili deneme sayısı (retry politikası 1 verir)
+  /// @param attemptTimeout Deneme başına zaman aşımı
+  /// @param refreshGattCache Bağlandıktan sonra, servis keşfinden önce GATT
+  ///        önbelleğini temizle (Android önbelleği sadece açık bağlantıda temizler)
   /// @return true ise bağlantı başarılı
-  Future<bool> connectToDevice(String deviceId) async {
+  Future<bool> connectToDevice(
+    String deviceId, {
+    int attempts = 2,
+    Duration attemptTimeout = const Duration(seconds: 5),
+    bool refreshGattCache = false,
+  }) async {
     if (deviceConnections[deviceId] == true && bleService.isConnected) {
       return true;
     }
@@ -40,8 +49,15 @@ class ConnectionManager {
         await Future.delayed(const Duration(milliseconds: 200));
       }
 
-      final success = await bleService.connectToDevice(deviceId);
+      final success = await bleService.connectToDevice(
+        deviceId,
+        attempts: attempts,
+        attemptTimeout: attemptTimeout,
+      );
       if (success) {
+        if (refreshGattCache) {
+          await bleService.refreshGattCache(deviceId);
+        }
         await bleService.discoverServices(deviceId);
         deviceConnections[deviceId] = true;
         return true;
@@ -1,5 +1,6 @@
 import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
 import '../../../ble/ble_service.dart';
+import '../../../ble/door_frame_encoder.dart';
 import 'card_manager.dart';
 import 'device_filter.dart';
 import '../../../globals.dart';
@@ -15,6 +16,12 @@ class MessageSender {
   List<int> _lastPasswordBytes = [];
   int _lastPasswordInt = 0;
 
+  /// Oturum encoder'i - komut + kart degismedikce yeniden kullanilir
+  /// Gecersiz kilma globals.sessionGeneration ile: BleManager.updateSessionKey
+  /// ve CardManager degisiklikte artirir, gonderimde karsilastirma yapilmaz
+  DoorFrameEncoder? _encoder;
+  int _encoderGeneration = -1;
+
   MessageSender({required this.bleService});
 
   /// Şifre getter'ları - UI'da gösterilmez, sadakece mesaja eklenir
@@ -45,6 +52,16 @@ class MessageSender {
     }
     return entryCommand;
   }
+
+  /// Oturum encoder'ini dondur (oturum/kart degistiyse yeniden kur)
+  DoorFrameEncoder _encoderFor(List<int> cardBytes) {
+    final encoder = _encoder;
+    if (encoder != null && _encoderGeneration == sessionGeneration) {
+      return encoder;
+    }
+    _encoderGeneration = sessionGeneration;
+    return _encoder = DoorFrameEncoder(check_newMD5(), cardBytes);
+  }
   /// Giriş mesajı gönder
   /// Format: [komut 16] + [kart 16/32] + [flag 0x00] + [şifre 8] = 41/57 byte
   /// @param cardBytes Kayıtlı kart numarası
@@ -55,10 +72,8 @@ class MessageSender {
       // Şifreyi kaydet
       _lastPasswordBytes = DeviceFilter.extractPassword(device);
       _lastPasswordInt = DeviceFilter.extractPasswordAsInt(device);
-      List<int> startBytes=check_newMD5();
-      final binaryMessage = [...startBytes, ...cardBytes, 0x00,..._lastPasswordBytes];
-      await bleService.sendBinaryMessage(binaryMessage);
-      return true;
+      final binaryMessage = _encoderFor(cardBytes).encodeEntry(_lastPasswordBytes);
+      return await bleService.sendBinaryMessage(binaryMessage);
     } catch (e) {
       print('Giriş mesajı hatası: $e');
       return false;
@@ -75,11 +90,8 @@ class MessageSender {
       // Şifreyi kaydet
       _lastPasswordBytes = DeviceFilter.extractPassword(device);
       _lastPasswordInt = DeviceFilter.extractPasswordAsInt(device);
-      List<int> startBytes=check_newMD5();
-
-      final binaryMessage = [...startBytes, ...cardBytes, 0x01,..._lastPasswordBytes];
-      await bleService.sendBinaryMessage(binaryMessage);
-      return true;
+      final binaryMessage = _encoderFor(cardBytes).encodeExit(_lastPasswordBytes);
+      return await bleService.sendBinaryMessage(binaryMessage);
     } catch (e) {
       print('Çıkış mesajı hatası: $e');
       return false;
@@ -93,8 +105,7 @@ class MessageSender {
     try {
       List<int> startBytes=check_newMD5();
       final binaryMessage = [...startBytes, ...configCommand];
-      await bleService.sendBinaryMessage(binaryMessage);//configCommand);
-      return true;
+      return await bleService.sendBinaryMessage(binaryMessage);//configCommand);
     } catch (e) {
       print('Konfigürasyon mesajı hatası: $e');
       return false;
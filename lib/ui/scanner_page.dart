@@ -3,11 +3,11 @@ import 'package:flutter/material.dart';
 import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
 import '../ble/ble_manager.dart';
 import '../ble/ble_service.dart';
+import '../ble/scan_aggregator.dart';
 import 'scanner/widgets/door_status_banner.dart';
 import 'scanner/widgets/device_list.dart';
 import 'scanner/widgets/message_settings_drawer.dart';
 import 'scanner/managers/card_manager.dart';
-import 'scanner/managers/device_filter.dart';
 import 'scanner/managers/connection_manager.dart';
 import 'scanner/managers/message_sender.dart';
 import 'scanner/managers/card_config_handler.dart';
@@ -29,6 +29,7 @@ class _ScannerPageState extends State<ScannerPage> {
   final BleService _bleService = BleService();
   late final ConnectionManager _connectionManager;
   late final MessageSender _messageSender;
+  late final ScanAggregator _scanAggregator;
   CardConfigHandler? _cardConfigHandler;
 
   // UI durumları
@@ -44,6 +45,7 @@ class _ScannerPageState extends State<ScannerPage> {
   String _doorStatus = "";
   Set<String> _favoriteIds = {};
   StreamSubscription<DeviceConnectionState>? _connectionStateSub;
+  StreamSubscription<ScanDelta>? _scanDeltaSub;
 
   @override
   void initState() {
@@ -57,10 +59,12 @@ class _ScannerPageState extends State<ScannerPage> {
     );
     _messageSender = MessageSender(bleService: _bleService);
 
-    // BLE cihaz taramasını dinle ve raw data 0x50 0x54 ile filtrele
-    _bleManager.devicesStream.listen((list) {
-      final filtered = list.where((device) => DeviceFilter.hasRawData5054(device)).toList();
-      setState(() => devices = filtered);
+    // Politeknik (0x50 0x54) reklamlarini 10 Hz delta olarak dinle
+    // Sadece ekleme/cikarma/RSSI kovasi degisince yeniden cizilir
+    _scanAggregator = ScanAggregator(_bleManager.advertisementStream);
+    _scanDeltaSub = _scanAggregator.deltas.listen((_) {
+      if (!mounted) return;
+      setState(() => devices = _scanAggregator.devices);
     });
 
     // BLE bağlantı durumunu dinle
@@ -115,6 +119,15 @@ class _ScannerPageState extends State<ScannerPage> {
     });
   }
 
+  /// Gönderimden hemen önce cihazın en son reklamını al ve oturum MD5'ini
+  /// aynı reklamdan hesapla — şifre (rn) ile MD5 aynı reklamdan gelmeli
+  /// Liste kopyası sadece RSSI kovası değişince yenilenir, rn dönmüş olabilir
+  DiscoveredDevice _latestAdvertisement(DiscoveredDevice listed) {
+    final latest = _scanAggregator.deviceById(listed.id) ?? listed;
+    BleManager.updateSessionKey(latest.manufacturerData);
+    return latest;
+  }
+
   /// Giriş mesajı gönder
   /// Raw data'dan şifre çıkarır ve mesaja ekler
   /// Mesaj formatı: [komut 16 byte] + [kart 16/32 byte] + [flag 0x00] + [şifre 8 byte]
@@ -169,7 +182,8 @@ class _ScannerPageState extends State<ScannerPage> {
 
       // Mesajı gönder (şifre otomatik eklenir)
       print('Send Message');
-      final success = await _messageSender.sendEntryMessage(cardBytes, device);
+      final success = await _messageSender.sendEntryMessage(
+          cardBytes, _latestAdvertisement(device));
       print('Send Message Done');
       if (success && mounted) {
         ScaffoldMessenger.of(context).showSnackBar(
@@ -240,7 +254,8 @@ class _ScannerPageState extends State<ScannerPage> {
       await Future.delayed(const Duration(milliseconds: 200));
 
       // Mesajı gönder (şifre otomatik eklenir)
-      final success = await _messageSender.sendExitMessage(cardBytes, device);
+      final success = await _messageSender.sendExitMessage(
+          cardBytes, _latestAdvertisement(device));
       if (success && mounted) {
         ScaffoldMessenger.of(context).showSnackBar(
           const SnackBar(
@@ -471,6 +486,8 @@ class _ScannerPageState extends State<ScannerPage> {
   @override
   void dispose() {
     _connectionKeepAliveTimer?.cancel();
+    _scanDeltaSub?.cancel();
+    _scanAggregator.dispose();
     _bleManager.dispose();
     _bleService.dispose();
     _connectionStateSub?.cancel();
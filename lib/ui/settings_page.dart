@@ -1,6 +1,9 @@
 import 'package:flutter/material.dart';
+import 'package:permission_handler/permission_handler.dart';
 import '../services/settings_service.dart';
 import '../services/background_scan_service.dart';
+import '../services/widget_channel_service.dart';
+import '../ble/scan_duty_scheduler.dart';
 
 class SettingsPage extends StatefulWidget {
   const SettingsPage({super.key});
@@ -20,6 +23,11 @@ class _SettingsPageState extends State<SettingsPage> {
   bool _notificationSound = true;
   bool _notificationVibrate = true;
   bool _quickModeEnabled = false;
+  bool _widgetKeepWarm = false;
+  Map<String, dynamic>? _keepWarmStats;
+  List<Map<String, dynamic>> _widgetBindings = [];
+  ScanDutyStats? _scanStats;
+  int? _tileWidgetId;
   bool _loading = true;
 
   @override
@@ -39,6 +47,10 @@ class _SettingsPageState extends State<SettingsPage> {
     final notifSound = await SettingsService.isNotificationSoundEnabled();
     final notifVibrate = await SettingsService.isNotificationVibrateEnabled();
     final quickMode = await SettingsService.isQuickModeEnabled();
+    final keepWarm = await SettingsService.isWidgetKeepWarmEnabled();
+    final keepWarmStats = await WidgetChannelService().getKeepWarmStats();
+    final widgetBindings = await WidgetChannelService().getWidgetBindings();
+    final scanStats = await ScanDutyStats.load();
 
     if (mounted) {
       setState(() {
@@ -52,6 +64,17 @@ class _SettingsPageState extends State<SettingsPage> {
         _notificationSound = notifSound;
         _notificationVibrate = notifVibrate;
         _quickModeEnabled = quickMode;
+        _widgetKeepWarm = keepWarm;
+        _keepWarmStats = keepWarmStats;
+        _widgetBindings = widgetBindings;
+        _scanStats = scanStats;
+        // Secim yoksa kutucuk ilk widget'i acar
+        final tile = widgetBindings.where((b) => b['tile'] == true);
+        _tileWidgetId = tile.isNotEmpty
+            ? tile.first['widgetId'] as int
+            : widgetBindings.isNotEmpty
+                ? widgetBindings.first['widgetId'] as int
+                : null;
         _loading = false;
       });
     }
@@ -64,6 +87,30 @@ class _SettingsPageState extends State<SettingsPage> {
     return 'Uzak';
   }
 
+  String _keepWarmSubtitle() {
+    final stats = _keepWarmStats;
+    final hits = stats?['hits'] as int? ?? 0;
+    final misses = stats?['misses'] as int? ?? 0;
+    if (stats == null || hits + misses == 0) {
+      return 'Motoru hazir tutar, widget dokunuslari aninda calisir';
+    }
+    final hitRate = ((stats['hitRate'] as num) * 100).round();
+    final memoryKb = stats['engineMemoryKb'] as int? ?? -1;
+    final memory = memoryKb >= 0 ? ', ~${(memoryKb / 1024).toStringAsFixed(1)} MB' : '';
+    // Ana motorun actigi dokunuslar orana girmez
+    return 'Hazir motor orani: %$hitRate ($hits/${hits + misses})$memory';
+  }
+
+  String? _scanStatsLabel() {
+    final stats = _scanStats;
+    if (stats == null || stats.elapsedMs == 0) return null;
+    final duty = (stats.dutyCycle * 100).toStringAsFixed(1);
+    final detect = stats.detections == 0
+        ? '-'
+        : '${(stats.averageDetectMs / 1000).toStringAsFixed(1)}sn';
+    return 'Radyo acik: %$duty, ortalama algilama: $detect';
+  }
+
   String _cooldownLabel(int seconds) {
     if (seconds < 60) return '${seconds}sn';
     return '${seconds ~/ 60}dk';
@@ -103,6 +150,7 @@ class _SettingsPageState extends State<SettingsPage> {
                       onChanged: (value) async {
                         setState(() => _autoOpenEnabled = value);
                         await SettingsService.setAutoOpenEnabled(value);
+                        await WidgetChannelService().syncKeepWarmEngine();
                       },
                     ),
                     if (_autoOpenEnabled) ...[
@@ -203,6 +251,15 @@ class _SettingsPageState extends State<SettingsPage> {
                           await SettingsService.setAutoOpenEntryOnly(value);
                         },
                       ),
+                      const Divider(height: 1),
+                      // Widget sicak motor
+                      SwitchListTile(
+                        title: const Text('Widget Hizli Baslatma'),
+                        subtitle: Text(_keepWarmSubtitle()),
+                        secondary: const Icon(Icons.bolt, size: 20),
+                        value: _widgetKeepWarm,
+                        onChanged: _setWidgetKeepWarm,
+                      ),
                     ],
                   ],
                 ),
@@ -245,7 +302,8 @@ class _SettingsPageState extends State<SettingsPage> {
                         padding: const EdgeInsets.fromLTRB(16, 0, 16, 12),
                         child: Text(
                           'Bildirim cubugunuzda kalici bir bildirim gorunecektir. '
-                          'Bu, Android\'in arka plan taramayi durdurmasini engeller.',
+                          'Bu, Android\'in arka plan taramayi durdurmasini engeller.'
+                          '${_scanStatsLabel() != null ? '\n${_scanStatsLabel()}' : ''}',
                           style: Theme.of(context)
                               .textTheme
                               .bodySmall
@@ -335,6 +393,52 @@ class _SettingsPageState extends State<SettingsPage> {
                   ],
                 ),
 
+                const SizedBox(height: 8),
+
+                // --- Bolum 5: Hizli Ayar Kutucugu ---
+                _buildSectionHeader(
+                  context,
+                  icon: Icons.dashboard_customize,
+                  title: 'Hizli Ayar Kutucugu',
+                ),
+                _buildCard(
+                  context,
+                  children: [
+                    ListTile(
+                      leading: const Icon(Icons.door_front_door, size: 20),
+                      title: const Text('Kutucugun Actigi Kapi'),
+                      subtitle: Text(_widgetBindings.isEmpty
+                          ? 'Once ana ekrana bir kapi widget\'i ekleyin'
+                          : 'Kilit ekranindan tek dokunusla acar'),
+                      trailing: _widgetBindings.isEmpty
+                          ? null
+                          : DropdownButton<int>(
+                              value: _tileWidgetId,
+                              underline: const SizedBox(),
+                              items: _widgetBindings.map((binding) {
+                                return DropdownMenuItem<int>(
+                                  value: binding['widgetId'] as int,
+                                  child: ConstrainedBox(
+                                    constraints:
+                                        const BoxConstraints(maxWidth: 120),
+                                    child: Text(
+                                      binding['doorName'] as String,
+                                      overflow: TextOverflow.ellipsis,
+                                    ),
+                                  ),
+                                );
+                              }).toList(),
+                              onChanged: (value) async {
+                                if (value == null) return;
+                                setState(() => _tileWidgetId = value);
+                                await WidgetChannelService()
+                                    .setTileWidget(value);
+                              },
+                            ),
+                    ),
+                  ],
+                ),
+
                 const SizedBox(height: 24),
               ],
             ),
@@ -370,6 +474,29 @@ class _SettingsPageState extends State<SettingsPage> {
     );
   }
 
+  /// Sicak motor on plan servisi Bluetooth izni olmadan baslatilamaz
+  /// (Android 14+ hata firlatir) - izin verilmeden ayar acilmaz
+  Future<void> _setWidgetKeepWarm(bool value) async {
+    if (value) {
+      final statuses = await [
+        Permission.bluetoothScan,
+        Permission.bluetoothConnect,
+      ].request();
+      if (statuses.values.any((status) => !status.isGranted)) {
+        _showInfoSnackbar('Widget hizli baslatma icin Bluetooth izni gerekli');
+        return;
+      }
+    }
+    setState(() => _widgetKeepWarm = value);
+    await SettingsService.setWidgetKeepWarmEnabled(value);
+    final started = await WidgetChannelService().syncKeepWarmEngine();
+    if (value && _autoOpenEnabled && !started) {
+      await SettingsService.setWidgetKeepWarmEnabled(false);
+      if (mounted) setState(() => _widgetKeepWarm = false);
+      _showInfoSnackbar('Widget hizli baslatma baslatilamadi');
+    }
+  }
+
   void _showInfoSnackbar(String message) {
     if (!mounted) return;
     ScaffoldMessenger.of(context).showSnackBar(
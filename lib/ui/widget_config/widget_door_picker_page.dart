@@ -7,6 +7,8 @@ import '../../services/widget_channel_service.dart';
 
 /// Door picker page for widget configuration
 /// Shows available BLE doors and allows selection for widget binding
+/// Uzun basma grup secimini baslatir: widget kapi grubuna baglanir,
+/// acarken en guclu uyelere paralel baglanilir
 class WidgetDoorPickerPage extends StatefulWidget {
   final int widgetId;
   final String? widgetType;
@@ -28,6 +30,10 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
   bool _isScanning = true;
   bool _isSaving = false;
 
+  // Grup secimi - ilk secilen birincil uye
+  final List<DiscoveredDevice> _groupSelection = [];
+  bool get _groupMode => _groupSelection.isNotEmpty;
+
   @override
   void initState() {
     super.initState();
@@ -76,6 +82,35 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
   }
 
   Future<void> _selectDoor(DiscoveredDevice device) async {
+    // Extract door name using existing device filter
+    // Use device ID as identifier (unique per device)
+    await _saveBinding(DeviceFilter.extractDeviceName(device), device.id);
+  }
+
+  /// Grup secimine ekle / cikar
+  void _toggleGroupMember(DiscoveredDevice device) {
+    setState(() {
+      final index = _groupSelection.indexWhere((d) => d.id == device.id);
+      if (index >= 0) {
+        _groupSelection.removeAt(index);
+      } else {
+        _groupSelection.add(device);
+      }
+    });
+  }
+
+  /// Secili kapilari grup olarak kaydet - ad: birincil uye + digerlerinin sayisi
+  Future<void> _saveGroup() async {
+    if (_groupSelection.length < 2) return;
+    final primary = _groupSelection.first;
+    final doorName = '${DeviceFilter.extractDeviceName(primary)} '
+        '+${_groupSelection.length - 1}';
+    await _saveBinding(doorName, primary.id,
+        groupMembers: [for (final device in _groupSelection) device.id]);
+  }
+
+  Future<void> _saveBinding(String doorName, String doorIdentifier,
+      {List<String> groupMembers = const []}) async {
     if (_isSaving) return;
 
     setState(() {
@@ -83,20 +118,17 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
     });
 
     try {
-      // Extract door name using existing device filter
-      final doorName = DeviceFilter.extractDeviceName(device);
-      // Use device ID as identifier (unique per device)
-      final doorIdentifier = device.id;
-
       debugPrint(
-          'WidgetDoorPicker: Saving widgetId=${widget.widgetId} door=$doorName id=$doorIdentifier');
+          'WidgetDoorPicker: Saving widgetId=${widget.widgetId} door=$doorName id=$doorIdentifier members=${groupMembers.length}');
 
       // Save to Android via MethodChannel
-      await WidgetChannelService().saveDoorConfig(
+      final saved = await WidgetChannelService().saveDoorConfig(
         widget.widgetId,
         doorName,
         doorIdentifier,
+        groupMembers: groupMembers,
       );
+      if (!saved) throw Exception('widget kaydedilemedi');
 
       if (mounted) {
         // Show success toast
@@ -147,6 +179,14 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
         title: const Text('Kapı Seç'),
         centerTitle: true,
         actions: [
+          if (_groupMode)
+            IconButton(
+              icon: const Icon(Icons.group_work),
+              onPressed: _groupSelection.length >= 2 && !_isSaving
+                  ? _saveGroup
+                  : null,
+              tooltip: 'Grup olarak kaydet',
+            ),
           if (_isScanning)
             const Padding(
               padding: EdgeInsets.only(right: 16),
@@ -206,6 +246,18 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
                     ),
                   ],
                 ),
+                const SizedBox(height: 4),
+                Text(
+                  _groupMode
+                      ? 'Grup: ${_groupSelection.length} kapı seçildi'
+                      : 'Kapı grubu için uzun basın',
+                  style: TextStyle(
+                    fontSize: 12,
+                    color: _groupMode
+                        ? colorScheme.primary
+                        : colorScheme.onSurfaceVariant,
+                  ),
+                ),
               ],
             ),
           ),
@@ -251,6 +303,8 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
                     itemBuilder: (context, index) {
                       final device = _devices[index];
                       final doorName = DeviceFilter.extractDeviceName(device);
+                      final selected =
+                          _groupSelection.any((d) => d.id == device.id);
 
                       return Card(
                         margin: const EdgeInsets.symmetric(
@@ -264,7 +318,7 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
                               borderRadius: BorderRadius.circular(12),
                             ),
                             child: Icon(
-                              Icons.meeting_room,
+                              selected ? Icons.check : Icons.meeting_room,
                               color: colorScheme.onPrimaryContainer,
                             ),
                           ),
@@ -288,12 +342,25 @@ class _WidgetDoorPickerPageState extends State<WidgetDoorPickerPage> {
                                   child:
                                       CircularProgressIndicator(strokeWidth: 2),
                                 )
-                              : Icon(
-                                  Icons.arrow_forward_ios,
-                                  size: 16,
-                                  color: colorScheme.outline,
-                                ),
-                          onTap: _isSaving ? null : () => _selectDoor(device),
+                              : _groupMode
+                                  ? Checkbox(
+                                      value: selected,
+                                      onChanged: (_) =>
+                                          _toggleGroupMember(device),
+                                    )
+                                  : Icon(
+                                      Icons.arrow_forward_ios,
+                                      size: 16,
+                                      color: colorScheme.outline,
+                                    ),
+                          onTap: _isSaving
+                              ? null
+                              : () => _groupMode
+                                  ? _toggleGroupMember(device)
+                                  : _selectDoor(device),
+                          onLongPress: _isSaving
+                              ? null
+                              : () => _toggleGroupMember(device),
                         ),
                       );
                     },
@@ -0,0 +1,68 @@
+import 'dart:convert';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:pfd6000/ble/door_frame_encoder.dart';
+import 'package:pfd6000/ui/scanner/managers/message_sender.dart';
+
+/// Golden-byte testleri - beklenen frame'ler eski MessageSender ciktisi:
+///   [...check_newMD5(), ...cardBytes, flag, ...extractPassword(device)]
+List<int> _hex(String s) => [
+      for (int i = 0; i < s.length; i += 2)
+        int.parse(s.substring(i, i + 2), radix: 16)
+    ];
+
+void main() {
+  final card16 = ascii.encode('0123456789ABCDEF');
+  final card32 = ascii.encode('0123456789ABCDEF0123456789ABCDEF');
+  final password = ascii.encode('12345678');
+  // md5("Poli87654321teknik")
+  final md5Prefix = _hex('B980B1C2A2C544FD6D2127AAB87704FF');
+
+  test('entry frame 41 byte without MD5 uses entryCommand', () {
+    final encoder = DoorFrameEncoder(MessageSender.entryCommand, card16);
+
+    final frame = encoder.encodeEntry(password);
+
+    expect(frame.length, 41);
+    expect(
+        frame,
+        _hex('697D6330C1A3F479DB5B3EF052DF7DC6'
+            '30313233343536373839414243444546'
+            '00'
+            '3132333435363738'));
+  });
+
+  test('entry and exit frames 57 byte with MD5 prefix', () {
+    final encoder = DoorFrameEncoder(md5Prefix, card32);
+    const card32Hex =
+        '3031323334353637383941424344454630313233343536373839414243444546';
+
+    expect(
+        List<int>.from(encoder.encodeEntry(password)),
+        _hex('B980B1C2A2C544FD6D2127AAB87704FF${card32Hex}00'
+            '3132333435363738'));
+    expect(
+        List<int>.from(encoder.encodeExit(password)),
+        _hex('B980B1C2A2C544FD6D2127AAB87704FF${card32Hex}01'
+            '3132333435363738'));
+  });
+
+  test('config frame 32 byte', () {
+    final encoder = DoorFrameEncoder(md5Prefix, card16);
+
+    expect(
+        encoder.encodeConfig(MessageSender.configCommand),
+        _hex('B980B1C2A2C544FD6D2127AAB87704FF'
+            'AEE8473CEBA2A56CD6F8B62805683238'));
+  });
+
+  test('empty password keeps the short frame', () {
+    final encoder = DoorFrameEncoder(MessageSender.entryCommand, card16);
+
+    final frame = encoder.encodeEntry(const []);
+
+    expect(frame.length, 33);
+    expect(frame.last, 0x00);
+  });
+}
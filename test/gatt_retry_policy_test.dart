@@ -0,0 +1,132 @@
+import 'dart:math';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:pfd6000/ble/gatt_retry_policy.dart';
+
+/// Hata metinleri flutter_reactive_ble / RxAndroidBle'nin Android'de
+/// BleService.lastError'a yazdigi mesajlardan alindi
+const _gattError =
+    "Disconnected from MAC='AA:BB:CC:DD:EE:FF' with status 133 (GATT_ERROR)";
+const _linkLoss =
+    "Disconnected from MAC='AA:BB:CC:DD:EE:FF' with status 8 (GATT_CONN_TIMEOUT)";
+const _gattFailure =
+    "Disconnected from MAC='AA:BB:CC:DD:EE:FF' with status 257 (GATT_FAILURE)";
+const _authFailure = "Disconnected from MAC='AA:BB:CC:DD:EE:FF' "
+    'with status 5 (GATT_INSUFFICIENT_AUTHENTICATION)';
+const _writeFailed = 'write failed: Exception: GATT exception from MAC address '
+    'AA:BB:CC:DD:EE:FF, status 3 (GATT_WRITE_NOT_PERMITTED)';
+
+void main() {
+  group('parseStatus', () {
+    test('reads the status code from a disconnect message', () {
+      expect(GattRetryPolicy.parseStatus(_gattError), 133);
+      expect(GattRetryPolicy.parseStatus(_linkLoss), 8);
+      expect(GattRetryPolicy.parseStatus('status=62'), 62);
+    });
+
+    test('GATT_ERROR without a code is 133', () {
+      expect(GattRetryPolicy.parseStatus('GATT_ERROR'), 133);
+    });
+
+    test('no status', () {
+      expect(GattRetryPolicy.parseStatus(null), isNull);
+      expect(GattRetryPolicy.parseStatus('connect timeout'), isNull);
+    });
+  });
+
+  group('isTransient', () {
+    test('transient GATT statuses', () {
+      expect(GattRetryPolicy.isTransient(_gattError), isTrue);
+      expect(GattRetryPolicy.isTransient(_linkLoss), isTrue);
+      expect(GattRetryPolicy.isTransient(_gattFailure), isTrue);
+    });
+
+    test('timeout and write failures', () {
+      expect(GattRetryPolicy.isTransient('connect timeout'), isTrue);
+      expect(GattRetryPolicy.isTransient(
+              'TimeoutException after 0:00:05.000000: Future not completed'),
+          isTrue);
+      expect(GattRetryPolicy.isTransient(_writeFailed), isTrue);
+      expect(GattRetryPolicy.isTransient('write characteristic missing'), isTrue);
+    });
+
+    test('non-transient status', () {
+      expect(GattRetryPolicy.isTransient(_authFailure), isFalse);
+      expect(GattRetryPolicy.isTransient(
+              "Disconnected from MAC='AA:BB:CC:DD:EE:FF' with status 0 (GATT_SUCCESS)"),
+          isFalse);
+    });
+
+    test('failure without a recorded error is not retried', () {
+      expect(GattRetryPolicy.isTransient(null), isFalse);
+    });
+  });
+
+  group('needsCacheRefresh', () {
+    test('133 / 257 and write failures refresh the cache', () {
+      expect(GattRetryPolicy.needsCacheRefresh(_gattError), isTrue);
+      expect(GattRetryPolicy.needsCacheRefresh(_gattFailure), isTrue);
+      expect(GattRetryPolicy.needsCacheRefresh(_writeFailed), isTrue);
+    });
+
+    test('timeouts and link loss keep the cache', () {
+      expect(GattRetryPolicy.needsCacheRefresh('connect timeout'), isFalse);
+      expect(GattRetryPolicy.needsCacheRefresh(_linkLoss), isFalse);
+      expect(GattRetryPolicy.needsCacheRefresh(null), isFalse);
+    });
+  });
+
+  group('canRetry', () {
+    final policy = GattRetryPolicy(random: Random(1));
+
+    test('stays inside the budget', () {
+      // 1. deneme: bekleme tavani 100+150ms, kisa deneme icin 1s kalmali (8s)
+      expect(policy.canRetry(1, const Duration(milliseconds: 6500), _gattError),
+          isTrue);
+      expect(policy.canRetry(1, const Duration(milliseconds: 6800), _gattError),
+          isFalse);
+      // 2. deneme: tavan 200+150ms
+      expect(policy.canRetry(2, const Duration(milliseconds: 6600), _gattError),
+          isTrue);
+      expect(policy.canRetry(2, const Duration(milliseconds: 6700), _gattError),
+          isFalse);
+    });
+
+    test('stops at maxAttempts', () {
+      expect(policy.canRetry(3, Duration.zero, _gattError), isFalse);
+    });
+
+    test('does not retry non-transient or unknown failures', () {
+      expect(policy.canRetry(1, Duration.zero, _authFailure), isFalse);
+      expect(policy.canRetry(1, Duration.zero, null), isFalse);
+    });
+
+    test('reduced budget after a failed direct connect', () {
+      final reduced = GattRetryPolicy(
+          budget: GattRetryPolicy.defaultBudget - const Duration(seconds: 6));
+      expect(reduced.canRetry(1, const Duration(milliseconds: 700), _gattError),
+          isTrue);
+      expect(reduced.canRetry(1, const Duration(milliseconds: 800), _gattError),
+          isFalse);
+    });
+  });
+
+  test('timeoutFor never exceeds the remaining budget', () {
+    final policy = GattRetryPolicy();
+    expect(policy.timeoutFor(Duration.zero), const Duration(seconds: 5));
+    expect(policy.timeoutFor(const Duration(seconds: 6)),
+        const Duration(seconds: 2));
+    expect(policy.timeoutFor(const Duration(seconds: 9)), Duration.zero);
+  });
+
+  test('backoff is exponential with bounded jitter', () {
+    final policy = GattRetryPolicy(random: Random(7));
+    for (int attempt = 1; attempt <= 3; attempt++) {
+      final base = const Duration(milliseconds: 100) * (1 << (attempt - 1));
+      final backoff = policy.backoff(attempt);
+      expect(backoff >= base, isTrue);
+      expect(backoff <= policy.backoffCeiling(attempt), isTrue);
+    }
+  });
+}
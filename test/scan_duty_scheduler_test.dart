@@ -0,0 +1,189 @@
+import 'package:flutter_reactive_ble/flutter_reactive_ble.dart';
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:pfd6000/ble/scan_duty_scheduler.dart';
+
+/// Reklam basina RSSI gurultusu (+-6 dB), tekrar eden sabit desen
+const List<int> _noise = [0, 5, -4, 6, -5, 3, -6, 4, -2, 1];
+
+/// Reklam araligi
+const int _stepMs = 250;
+
+final DateTime _t0 = DateTime(2026, 1, 1);
+
+DateTime _at(int ms) => _t0.add(Duration(milliseconds: ms));
+
+/// Kapiya 4 dB/s yaklasan kullanici: -90 dBm'den baslar
+int _approaching(int ms) => -90 + ms * 4 ~/ 1000;
+
+/// Gorulmeleri [_stepMs] araliklarla ver; seviyenin active oldugu ilk an (ms)
+int? _firstActive(ScanDutyScheduler scheduler, int durationMs,
+    int Function(int ms) rssiAt) {
+  for (int i = 0; i * _stepMs <= durationMs; i++) {
+    final ms = i * _stepMs;
+    scheduler.onFavoriteSighting('door', rssiAt(ms) + _noise[i % 10], _at(ms));
+    if (scheduler.level == ScanDutyLevel.active) return ms;
+  }
+  return null;
+}
+
+/// BackgroundScanTaskHandler._apply ile ayni karar uygulamasi
+/// Sanal saatle tarama baslatmalarini sayar
+class _ScanHarness {
+  final ScanDutyScheduler scheduler = ScanDutyScheduler();
+  final List<int> starts = [];
+  ScanMode? scanMode;
+  int? windowEndMs;
+
+  void tick(int ms) => apply(scheduler.onTick(_at(ms)), ms);
+
+  void expireWindow(int ms) {
+    final end = windowEndMs;
+    if (end != null && ms >= end) {
+      windowEndMs = null;
+      stop(ms);
+    }
+  }
+
+  void apply(ScanDecision? decision, int ms) {
+    if (decision == null) {
+      if (windowEndMs == null) stop(ms);
+      return;
+    }
+    if (decision.continuous &&
+        scanMode == decision.mode &&
+        windowEndMs == null) {
+      return;
+    }
+    stop(ms);
+    scanMode = decision.mode;
+    scheduler.onScanStart(decision.mode, _at(ms));
+    starts.add(ms);
+    final window = decision.window;
+    windowEndMs = window == null ? null : ms + window.inMilliseconds;
+  }
+
+  void stop(int ms) {
+    if (scanMode == null) return;
+    scanMode = null;
+    scheduler.onScanStop(_at(ms));
+  }
+}
+
+void main() {
+  group('rising trend', () {
+    test('stationary -70 dBm device never goes active', () {
+      final scheduler = ScanDutyScheduler();
+
+      final active = _firstActive(scheduler, 60000, (_) => -70);
+
+      expect(active, isNull);
+      expect(scheduler.level, ScanDutyLevel.balanced);
+    });
+
+    test('a single strong advertisement is not a trend', () {
+      final scheduler = ScanDutyScheduler();
+
+      final active =
+          _firstActive(scheduler, 5000, (ms) => ms == 2500 ? -55 : -70);
+
+      expect(active, isNull);
+    });
+
+    test('approaching device goes active within 4 s', () {
+      final scheduler = ScanDutyScheduler();
+
+      final active = _firstActive(scheduler, 10000, _approaching);
+
+      expect(active, isNotNull);
+      expect(active!, lessThan(4000));
+    });
+
+    test('first sighting steps idle up to balanced', () {
+      final scheduler = ScanDutyScheduler();
+
+      expect(scheduler.onFavoriteSighting('door', -70, _at(0)), isTrue);
+      expect(scheduler.level, ScanDutyLevel.balanced);
+      expect(scheduler.onFavoriteSighting('door', -70, _at(250)), isFalse);
+    });
+  });
+
+  group('back-off', () {
+    test('active -> balanced after activeHold, idle after quietPeriod', () {
+      final scheduler = ScanDutyScheduler();
+      final activeMs = _firstActive(scheduler, 10000, _approaching)!;
+      // Son gorulme = son sicak gorulme = activeMs
+      final hold = scheduler.activeHold.inMilliseconds;
+      final quiet = scheduler.quietPeriod.inMilliseconds;
+
+      scheduler.onTick(_at(activeMs + hold));
+      expect(scheduler.level, ScanDutyLevel.active);
+
+      scheduler.onTick(_at(activeMs + hold + 1));
+      expect(scheduler.level, ScanDutyLevel.balanced);
+
+      scheduler.onTick(_at(activeMs + quiet));
+      expect(scheduler.level, ScanDutyLevel.balanced);
+
+      scheduler.onTick(_at(activeMs + quiet + 1));
+      expect(scheduler.level, ScanDutyLevel.idle);
+    });
+
+    test('active scans continuously, idle every 6 ticks', () {
+      final scheduler = ScanDutyScheduler();
+      final activeMs = _firstActive(scheduler, 10000, _approaching)!;
+
+      final active = scheduler.onTick(_at(activeMs + 1));
+      expect(active!.mode, ScanMode.lowLatency);
+      expect(active.continuous, isTrue);
+
+      // quietPeriod sonrasi idle: pencere sonrasi 5 tick taranmaz
+      final idleMs = activeMs + scheduler.quietPeriod.inMilliseconds + 1;
+      final first = scheduler.onTick(_at(idleMs));
+      expect(first!.mode, ScanMode.lowPower);
+      scheduler.onScanStart(first.mode, _at(idleMs));
+      for (int i = 1; i < 6; i++) {
+        expect(scheduler.onTick(_at(idleMs + i * 5000)), isNull);
+      }
+      expect(scheduler.onTick(_at(idleMs + 6 * 5000)), isNotNull);
+    });
+  });
+
+  test('at most 5 scan starts per 30 s across step-ups', () {
+    final harness = _ScanHarness();
+    // 60 sn'lik dongu: 10 sn yaklasma, 20 sn kapida, 30 sn uzakta
+    // Ilk 20 sn kapi yok
+    int? rssiAt(int ms) {
+      if (ms < 20000) return null;
+      final cycle = ms % 60000;
+      if (cycle < 10000) return _approaching(cycle);
+      if (cycle < 30000) return -50;
+      return null;
+    }
+
+    var reachedActive = false;
+    for (int i = 0; i * _stepMs < 480000; i++) {
+      final ms = i * _stepMs;
+      harness.expireWindow(ms);
+      if (ms % ScanDutyScheduler.tick.inMilliseconds == 0) harness.tick(ms);
+
+      final rssi = rssiAt(ms);
+      if (harness.scanMode != null && rssi != null) {
+        final steppedUp = harness.scheduler
+            .onFavoriteSighting('door', rssi + _noise[i % 10], _at(ms));
+        if (steppedUp) {
+          harness.apply(harness.scheduler.currentDecision(), ms);
+        }
+      }
+      reachedActive |= harness.scheduler.level == ScanDutyLevel.active;
+    }
+
+    expect(reachedActive, isTrue);
+    final starts = harness.starts;
+    for (final from in starts) {
+      final inWindow =
+          starts.where((ms) => ms >= from && ms < from + 30000).length;
+      expect(inWindow, lessThanOrEqualTo(5), reason: 'starts from ${from}ms');
+    }
+  });
+}